@@ -0,0 +1,239 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.users.UserService;
+import com.google.apphosting.api.ApiProxy;
+import com.google.cloud.translate.Translate;
+import com.google.common.reflect.Reflection;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.Comment;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the CPU-side work of sending a page of comments from /data: resolving each comment's
+ * text in the requested language, creating the comments, and serializing them. The Datastore and
+ * translation clients are fakes that fail if called, so only in-process work is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentPathBenchmark {
+  private static final String LANGUAGE_CODE = "es";
+
+  @Param({"10", "100", "10000"})
+  public int commentCount;
+
+  /**
+   * Where each comment's translation comes from: the comment is already in the requested
+   * language, a translation stored on the entity, or the translation cache.
+   */
+  @Param({"same-language", "stored", "cached"})
+  public String translationSource;
+
+  private final Gson gson = new Gson();
+  private ServiceRegistry services;
+  private List<Entity> entities;
+  private List<String> translatedTexts;
+  private List<Comment> comments;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    // Creating keys needs an App Engine environment. Only the setup creates keys, so the
+    // benchmarks themselves run without one.
+    ApiProxy.setEnvironmentForCurrentThread(fakeEnvironment());
+    try {
+      createComments();
+    } finally {
+      ApiProxy.clearEnvironmentForCurrentThread();
+    }
+  }
+
+  private void createComments() {
+    // The translation cache must hold every comment's translation. The cache may evict entries
+    // before it is full, so it is given room to spare.
+    services = new ServiceRegistry(fake(DatastoreService.class), () -> fake(Translate.class),
+        fake(UserService.class), Optional.empty(), 2L * commentCount);
+
+    entities = new ArrayList<>(commentCount);
+    for (int i = 0; i < commentCount; i++) {
+      Entity entity = new Entity(KeyFactory.createKey("Comment", i + 1));
+      String commentText = "Comment number " + i + " with a few more words of text in it";
+      String translatedText = "Comentario número " + i + " con algunas palabras más de texto";
+      entity.setProperty("author", "Author " + (i % 50));
+      entity.setProperty("commentText", commentText);
+      entity.setProperty("timestamp", 1_600_000_000_000L + i);
+
+      switch (translationSource) {
+        case "same-language":
+          entity.setProperty("languageCode", LANGUAGE_CODE);
+          break;
+        case "stored":
+          entity.setProperty("languageCode", "en");
+          entity.setUnindexedProperty(
+              TranslateCommentServlet.getTranslationProperty(LANGUAGE_CODE), translatedText);
+          break;
+        case "cached":
+          entity.setProperty("languageCode", "en");
+          services.getTranslationCache().put(i + 1, commentText, LANGUAGE_CODE, translatedText);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown translation source: " + translationSource);
+      }
+      entities.add(entity);
+    }
+
+    translatedTexts = DataServlet.translateComments(services, entities, LANGUAGE_CODE)
+                          .texts.collect(Collectors.toList());
+    if (services.getTranslationCache().stats().missCount() > 0) {
+      throw new IllegalStateException("The translation cache does not hold every translation.");
+    }
+    comments = DataServlet.createComments(entities.stream(), translatedTexts.stream())
+                   .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public void translateComments(Blackhole blackhole) {
+    DataServlet.translateComments(services, entities, LANGUAGE_CODE)
+        .texts.forEach(blackhole::consume);
+  }
+
+  @Benchmark
+  public void createComments(Blackhole blackhole) {
+    DataServlet.createComments(entities.stream(), translatedTexts.stream())
+        .forEach(blackhole::consume);
+  }
+
+  /**
+   * Creates the comments with a plain loop, as a baseline for the zipped streams.
+   */
+  @Benchmark
+  public void constructComments(Blackhole blackhole) {
+    Iterator<String> texts = translatedTexts.iterator();
+    for (Entity entity : entities) {
+      blackhole.consume(new Comment(entity.getKey().getId(), (String) entity.getProperty("author"),
+          texts.next(), (long) entity.getProperty("timestamp")));
+    }
+  }
+
+  /**
+   * Serializes the comments by building a JSON tree first, as /data did before it streamed its
+   * response.
+   */
+  @Benchmark
+  public String serializeTree() {
+    JsonElement tree = gson.toJsonTree(comments);
+    return gson.toJson(tree);
+  }
+
+  /**
+   * Serializes the comments one at a time with a JsonWriter, as /data does now.
+   */
+  @Benchmark
+  public String serializeStreaming() throws IOException {
+    StringWriter output = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(output)) {
+      writer.beginArray();
+      for (Comment comment : comments) {
+        gson.toJson(comment, Comment.class, writer);
+      }
+      writer.endArray();
+    }
+    return output.toString();
+  }
+
+  /**
+   * Resolves, creates, and streams a page of comments end to end, as /data does.
+   */
+  @Benchmark
+  public String readPath() throws IOException {
+    Stream<String> texts = DataServlet.translateComments(services, entities, LANGUAGE_CODE).texts;
+    StringWriter output = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(output)) {
+      writer.beginArray();
+      Iterator<Comment> pageComments =
+          DataServlet.createComments(entities.stream(), texts).iterator();
+      while (pageComments.hasNext()) {
+        gson.toJson(pageComments.next(), Comment.class, writer);
+      }
+      writer.endArray();
+    }
+    return output.toString();
+  }
+
+  /**
+   * Returns an environment for a logged-out request to an application called "benchmarks".
+   */
+  private static ApiProxy.Environment fakeEnvironment() {
+    return Reflection.newProxy(ApiProxy.Environment.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "getAppId":
+          return "benchmarks";
+        case "getAttributes":
+          return new HashMap<String, Object>();
+        case "getRequestNamespace":
+          return "";
+        case "getRemainingMillis":
+          return Long.MAX_VALUE;
+        case "isLoggedIn":
+        case "isAdmin":
+          return false;
+        default:
+          return null;
+      }
+    });
+  }
+
+  /**
+   * Returns a fake service that fails if any of its methods are called, so that a benchmark that
+   * accidentally calls a backend fails instead of measuring it.
+   */
+  private static <T> T fake(Class<T> serviceInterface) {
+    return Reflection.newProxy(serviceInterface, (proxy, method, args) -> {
+      throw new UnsupportedOperationException(
+          serviceInterface.getSimpleName() + "." + method.getName() + " is not available");
+    });
+  }
+}
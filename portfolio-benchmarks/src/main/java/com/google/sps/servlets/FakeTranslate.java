@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.api.services.translate.model.DetectionsResourceItems;
+import com.google.api.services.translate.model.LanguagesResource;
+import com.google.api.services.translate.model.TranslationsResource;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.TranslateOptions;
+import com.google.cloud.translate.spi.TranslateRpcFactory;
+import com.google.cloud.translate.spi.v2.TranslateRpc;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process translation service for load tests. Every text is detected to be in the same
+ * language, and translating a text marks it as translated. Each call waits for a fixed latency
+ * first, like a round trip to the real service.
+ *
+ * <p>The fake replaces the client library's transport through its public RPC factory, so the
+ * detections and translations are built by the real client from API responses.
+ */
+final class FakeTranslate {
+  private FakeTranslate() {}
+
+  /**
+   * Returns a service that detects every text to be in the given language and takes the given
+   * number of milliseconds to answer each call.
+   */
+  static Translate create(String detectedLanguage, long latencyMillis) {
+    TranslateRpcFactory rpcFactory = options -> new TranslateRpc() {
+      @Override
+      public List<List<DetectionsResourceItems>> detect(List<String> texts) {
+        sleep(latencyMillis);
+        List<List<DetectionsResourceItems>> detections = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+          detections.add(ImmutableList.of(
+              new DetectionsResourceItems().setLanguage(detectedLanguage).setConfidence(1f)));
+        }
+        return detections;
+      }
+
+      @Override
+      public List<TranslationsResource> translate(
+          List<String> texts, Map<TranslateRpc.Option, ?> optionMap) {
+        sleep(latencyMillis);
+        List<TranslationsResource> translations = new ArrayList<>(texts.size());
+        for (String text : texts) {
+          translations.add(new TranslationsResource()
+                               .setTranslatedText("[translated] " + text)
+                               .setDetectedSourceLanguage(detectedLanguage));
+        }
+        return translations;
+      }
+
+      @Override
+      public List<LanguagesResource> listSupportedLanguages(Map<TranslateRpc.Option, ?> optionMap) {
+        return ImmutableList.of();
+      }
+    };
+
+    return TranslateOptions.newBuilder()
+        .setProjectId("load-test")
+        .setCredentials(NoCredentials.getInstance())
+        .setServiceRpcFactory(rpcFactory)
+        .build()
+        .getService();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,542 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.taskqueue.dev.LocalTaskQueue;
+import com.google.appengine.api.taskqueue.dev.QueueStateInfo.TaskStateInfo;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.apphosting.api.ApiProxy;
+import com.google.cloud.translate.Translate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CharStreams;
+import com.google.common.reflect.Reflection;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.sps.data.Histogram;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Sends a fixed mix of requests to the portfolio's servlets and reports the throughput, latency,
+ * and allocation of each endpoint. The servlets run against the local App Engine services, with
+ * Datastore held in memory, and a fake translation service with a fixed latency, so the test runs
+ * offline and its results can be compared from run to run.
+ *
+ * <p>Each endpoint is sent requests at a fixed rate however long earlier requests take, and
+ * latency is measured from when each request was due, so time spent waiting for a free thread
+ * counts against the endpoint. Allocation is the memory allocated by the thread that handled the
+ * request; work done later by the task queue or the write-behind thread is not included.
+ *
+ * <p>The test is configured with system properties:
+ * <ul>
+ *   <li>{@code loadtest.duration-seconds}: how long to measure for, after a warmup of
+ *       {@code loadtest.warmup-seconds}.
+ *   <li>{@code loadtest.rate.<endpoint>}: requests per second sent to each endpoint, where the
+ *       endpoints are {@code bootstrap}, {@code read}, {@code write}, {@code name},
+ *       {@code login-status}, and {@code delete}. A rate of zero turns an endpoint off.
+ *   <li>{@code loadtest.threads}: the number of threads that handle requests.
+ *   <li>{@code loadtest.translate-latency-ms}: how long each call to the translation service
+ *       takes.
+ *   <li>{@code loadtest.language-code}: the language that comments are read in. Comments are
+ *       written in English, so any other language reads translations.
+ *   <li>{@code loadtest.initial-comments}: the number of comments stored before the test starts.
+ *   <li>{@code loadtest.write-behind}: whether new comments are written in the background.
+ * </ul>
+ */
+public final class LoadTest {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(LoadTest.class.getName());
+
+  private static final String USER_ID = "123";
+  private static final String QUEUE_NAME = "default";
+  private static final long TASK_POLL_INTERVAL_MS = 100;
+  // The number of visitors whose sessions the bootstrap requests are spread across.
+  private static final int SESSIONS = 100;
+
+  private static final HttpServletRequest UNSUPPORTED_REQUEST = fake(HttpServletRequest.class);
+  private static final HttpServletResponse UNSUPPORTED_RESPONSE = fake(HttpServletResponse.class);
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(
+          new LocalDatastoreServiceTestConfig().setApplyAllHighRepJobPolicy(),
+          new LocalMemcacheServiceTestConfig(),
+          new LocalUserServiceTestConfig(),
+          new LocalTaskQueueTestConfig().setDisableAutoTaskExecution(true))
+          .setEnvIsLoggedIn(true)
+          .setEnvEmail("loadtest@example.com")
+          .setEnvAuthDomain("example.com")
+          .setEnvAttributes(ImmutableMap.<String, Object>of(
+              "com.google.appengine.api.users.UserService.user_id_key", USER_ID));
+
+  private final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final long warmupNanos =
+      TimeUnit.SECONDS.toNanos(Long.getLong("loadtest.warmup-seconds", 10));
+  private final long durationNanos =
+      TimeUnit.SECONDS.toNanos(Long.getLong("loadtest.duration-seconds", 60));
+  private final int threadCount = Integer.getInteger("loadtest.threads", 32);
+  private final long translateLatencyMillis = Long.getLong("loadtest.translate-latency-ms", 50);
+  private final String languageCode = System.getProperty("loadtest.language-code", "es");
+  private final int initialComments = Integer.getInteger("loadtest.initial-comments", 200);
+  private final boolean writeBehind = Boolean.getBoolean("loadtest.write-behind");
+
+  private ApiProxy.Environment environment;
+  private ServiceRegistry services;
+  private Map<String, HttpServlet> taskServlets;
+  private List<Endpoint> endpoints;
+  private long measureStartNanos;
+
+  public static void main(String[] args) throws Exception {
+    new LoadTest().run();
+  }
+
+  private void run() throws Exception {
+    threads.setThreadAllocatedMemoryEnabled(true);
+    helper.setUp();
+    environment = ApiProxy.getCurrentEnvironment();
+    try {
+      setUpServlets();
+      storeInitialComments();
+      sendRequests();
+      printReport();
+    } finally {
+      if (services != null) {
+        services.close();
+      }
+      helper.tearDown();
+    }
+  }
+
+  private void setUpServlets() throws Exception {
+    Translate translate = FakeTranslate.create("en", translateLatencyMillis);
+    services = new ServiceRegistry(DatastoreServiceFactory.getDatastoreService(),
+        () -> translate, UserServiceFactory.getUserService(),
+        writeBehind ? Optional.of(environmentThreadFactory("comment-writer-%d"))
+                    : Optional.empty());
+    services.getUserInfoStore().putName(USER_ID, "Load Tester");
+
+    DataServlet dataServlet = initServlet(new DataServlet());
+    NameServlet nameServlet = initServlet(new NameServlet());
+    LoginStatusServlet loginStatusServlet = initServlet(new LoginStatusServlet());
+    DeleteDataServlet deleteDataServlet = initServlet(new DeleteDataServlet());
+
+    taskServlets = ImmutableMap.of(
+        "/tasks/delete-comments", initServlet(new DeleteCommentsServlet()),
+        "/tasks/update-comment-authors", initServlet(new UpdateCommentAuthorsServlet()),
+        "/tasks/translate-comment", initServlet(new TranslateCommentServlet()));
+
+    List<HttpSession> sessions = new ArrayList<>();
+    for (int i = 0; i < SESSIONS; i++) {
+      sessions.add(createSession());
+    }
+    Map<String, String> pageParameters = ImmutableMap.of(
+        "max-comments", "10", "sort-option", "newest", "language-code", languageCode);
+
+    endpoints = new ArrayList<>();
+    endpoints.add(new Endpoint("GET /bootstrap", rate("bootstrap", 10), sequence -> {
+      FakeRequest request = new FakeRequest("GET", pageParameters);
+      request.servletPath = "/bootstrap";
+      request.session = sessions.get((int) (sequence % SESSIONS));
+      return send(dataServlet, request);
+    }));
+    endpoints.add(new Endpoint("GET /data", rate("read", 100),
+        sequence -> send(dataServlet, new FakeRequest("GET", pageParameters))));
+    endpoints.add(new Endpoint("POST /data", rate("write", 10), sequence
+        -> send(dataServlet,
+            new FakeRequest("POST", ImmutableMap.of("comment", "Load test comment " + sequence)))));
+    endpoints.add(new Endpoint("POST /name", rate("name", 1), sequence
+        -> send(nameServlet,
+            new FakeRequest("POST", ImmutableMap.of("new-name", "Load Tester " + sequence % 10)))));
+    endpoints.add(new Endpoint("GET /login-status", rate("login-status", 20),
+        sequence -> send(loginStatusServlet, new FakeRequest("GET", ImmutableMap.of()))));
+    endpoints.add(new Endpoint("POST /delete-data", rate("delete", 0.05),
+        sequence -> send(deleteDataServlet, new FakeRequest("POST", ImmutableMap.of()))));
+  }
+
+  private void storeInitialComments() throws Exception {
+    HttpServlet dataServlet = initServlet(new DataServlet());
+    for (int i = 0; i < initialComments; i++) {
+      send(dataServlet,
+          new FakeRequest("POST", ImmutableMap.of("comment", "Initial comment " + i)));
+    }
+    runQueuedTasks();
+  }
+
+  /**
+   * Sends requests to every endpoint at its rate for the warmup and the measured duration, and
+   * waits for the requests to finish.
+   */
+  private void sendRequests() throws Exception {
+    ExecutorService workers =
+        Executors.newFixedThreadPool(threadCount, environmentThreadFactory("load-test-%d"));
+    ScheduledExecutorService arrivals = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("load-test-arrivals").setDaemon(true).build());
+    ScheduledExecutorService taskRunner =
+        Executors.newSingleThreadScheduledExecutor(environmentThreadFactory("load-test-tasks"));
+
+    long startNanos = System.nanoTime();
+    measureStartNanos = startNanos + warmupNanos;
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.ratePerSecond <= 0) {
+        continue;
+      }
+      long periodNanos =
+          Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / endpoint.ratePerSecond));
+      AtomicLong sequence = new AtomicLong();
+      arrivals.scheduleAtFixedRate(() -> {
+        long requestSequence = sequence.getAndIncrement();
+        long dueNanos = startNanos + requestSequence * periodNanos;
+        workers.execute(() -> handle(endpoint, requestSequence, dueNanos));
+      }, 0, periodNanos, TimeUnit.NANOSECONDS);
+    }
+    taskRunner.scheduleWithFixedDelay(() -> {
+      try {
+        runQueuedTasks();
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to run queued tasks", e);
+      }
+    }, TASK_POLL_INTERVAL_MS, TASK_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+    TimeUnit.NANOSECONDS.sleep(warmupNanos + durationNanos);
+    arrivals.shutdownNow();
+    arrivals.awaitTermination(1, TimeUnit.MINUTES);
+    workers.shutdown();
+    if (!workers.awaitTermination(5, TimeUnit.MINUTES)) {
+      logger.warning("Requests were still running after five minutes.");
+    }
+    taskRunner.shutdown();
+    taskRunner.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Sends one request to the endpoint and records it if it was due after the warmup.
+   */
+  private void handle(Endpoint endpoint, long sequence, long dueNanos) {
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+    int status;
+    try {
+      status = endpoint.sender.send(sequence);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, endpoint.name + " failed", e);
+      status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    }
+    long endNanos = System.nanoTime();
+    long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+    if (dueNanos >= measureStartNanos && dueNanos < measureStartNanos + durationNanos) {
+      endpoint.latencies.record(TimeUnit.NANOSECONDS.toMicros(endNanos - dueNanos));
+      endpoint.allocatedBytes.add(allocated);
+      if (status >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+        endpoint.errors.increment();
+      }
+    }
+  }
+
+  private void printReport() {
+    double seconds = durationNanos / 1e9;
+    System.out.printf("%-20s %9s %9s %9s %9s %9s %7s %10s %9s%n", "endpoint", "requests",
+        "req/s", "p50 ms", "p99 ms", "max ms", "errors", "KB/req", "MB/s");
+    for (Endpoint endpoint : endpoints) {
+      Histogram.Snapshot latencies = endpoint.latencies.snapshot();
+      long count = latencies.getCount();
+      long allocatedBytes = endpoint.allocatedBytes.sum();
+      System.out.printf("%-20s %9d %9.1f %9.2f %9.2f %9.2f %7d %10.1f %9.1f%n", endpoint.name,
+          count, count / seconds, latencies.getPercentile50() / 1e3,
+          latencies.getPercentile99() / 1e3, latencies.getMax() / 1e3, endpoint.errors.sum(),
+          count == 0 ? 0 : allocatedBytes / 1024.0 / count, allocatedBytes / 1e6 / seconds);
+    }
+
+    long collections = 0;
+    long collectionMillis = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      collections += collector.getCollectionCount();
+      collectionMillis += collector.getCollectionTime();
+    }
+    System.out.printf("%d garbage collections took %d ms in total.%n", collections,
+        collectionMillis);
+  }
+
+  /**
+   * Runs the tasks in the queue that are due, including the tasks that they add, until none are
+   * left. Tasks scheduled for later are left in the queue.
+   */
+  private void runQueuedTasks() throws Exception {
+    LocalTaskQueue taskQueue = LocalTaskQueueTestConfig.getLocalTaskQueue();
+    while (true) {
+      List<TaskStateInfo> dueTasks = new ArrayList<>();
+      for (TaskStateInfo task : taskQueue.getQueueStateInfo().get(QUEUE_NAME).getTaskInfo()) {
+        if (task.getEtaMillis() <= System.currentTimeMillis()) {
+          dueTasks.add(task);
+        }
+      }
+      if (dueTasks.isEmpty()) {
+        return;
+      }
+
+      for (TaskStateInfo task : dueTasks) {
+        taskQueue.deleteTask(QUEUE_NAME, task.getTaskName());
+        FakeRequest request = new FakeRequest("POST", parseFormParameters(task.getBody()));
+        request.headers.put("X-AppEngine-QueueName", QUEUE_NAME);
+        int status = send(taskServlets.get(task.getUrl()), request);
+        if (status >= HttpServletResponse.SC_BAD_REQUEST) {
+          logger.warning("Task " + task.getUrl() + " failed with status " + status);
+        }
+      }
+    }
+  }
+
+  private static double rate(String endpoint, double defaultRate) {
+    String rate = System.getProperty("loadtest.rate." + endpoint);
+    return rate == null ? defaultRate : Double.parseDouble(rate);
+  }
+
+  /**
+   * Sends the request to the servlet and returns the status of its response.
+   */
+  private static int send(HttpServlet servlet, FakeRequest request) throws Exception {
+    FakeResponse response = new FakeResponse();
+    servlet.service(request, response);
+    return response.status;
+  }
+
+  private <T extends HttpServlet> T initServlet(T servlet) throws Exception {
+    ServletContext context = Reflection.newProxy(ServletContext.class, (proxy, method, args) -> {
+      if (method.getName().equals("getAttribute")) {
+        return services;
+      }
+      throw new UnsupportedOperationException("ServletContext." + method.getName());
+    });
+    ServletConfig config = Reflection.newProxy(ServletConfig.class, (proxy, method, args) -> {
+      if (method.getName().equals("getServletContext")) {
+        return context;
+      }
+      throw new UnsupportedOperationException("ServletConfig." + method.getName());
+    });
+
+    servlet.init(config);
+    return servlet;
+  }
+
+  /**
+   * Returns a factory for threads that use the local App Engine services, which are otherwise
+   * bound to the thread that set them up.
+   */
+  private ThreadFactory environmentThreadFactory(String nameFormat) {
+    ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat(nameFormat).build();
+    return runnable -> factory.newThread(() -> {
+      ApiProxy.setEnvironmentForCurrentThread(environment);
+      runnable.run();
+    });
+  }
+
+  private static Map<String, String> parseFormParameters(String body)
+      throws UnsupportedEncodingException {
+    Map<String, String> parameters = new HashMap<>();
+    for (Map.Entry<String, String> parameter :
+        Splitter.on('&').withKeyValueSeparator('=').split(body).entrySet()) {
+      parameters.put(parameter.getKey(), URLDecoder.decode(parameter.getValue(), "UTF-8"));
+    }
+    return parameters;
+  }
+
+  /**
+   * Returns a session that only keeps attributes.
+   */
+  private static HttpSession createSession() {
+    Map<String, Object> attributes = new ConcurrentHashMap<>();
+    return Reflection.newProxy(HttpSession.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "getAttribute":
+          return attributes.get(args[0]);
+        case "setAttribute":
+          attributes.put((String) args[0], args[1]);
+          return null;
+        case "removeAttribute":
+          attributes.remove(args[0]);
+          return null;
+        default:
+          throw new UnsupportedOperationException("HttpSession." + method.getName());
+      }
+    });
+  }
+
+  /**
+   * Returns a fake that fails if any of its methods are called, so that a servlet that needs more
+   * of the request or response than the load test provides fails instead of misbehaving.
+   */
+  private static <T> T fake(Class<T> type) {
+    return Reflection.newProxy(type, (proxy, method, args) -> {
+      throw new UnsupportedOperationException(
+          type.getSimpleName() + "." + method.getName() + " is not available");
+    });
+  }
+
+  /**
+   * Sends a request to a servlet and returns the status of the response.
+   */
+  private interface RequestSender {
+    int send(long sequence) throws Exception;
+  }
+
+  /**
+   * An endpoint under test, the rate it is sent requests at, and what was measured of them.
+   */
+  private static final class Endpoint {
+    final String name;
+    final double ratePerSecond;
+    final RequestSender sender;
+    // Latencies in microseconds.
+    final Histogram latencies = new Histogram();
+    final LongAdder allocatedBytes = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    Endpoint(String name, double ratePerSecond, RequestSender sender) {
+      this.name = name;
+      this.ratePerSecond = ratePerSecond;
+      this.sender = sender;
+    }
+  }
+
+  /**
+   * A request with the given method, parameters, headers, servlet path, and session.
+   */
+  private static final class FakeRequest extends HttpServletRequestWrapper {
+    private final String method;
+    private final Map<String, String> parameters;
+    final Map<String, String> headers = new HashMap<>();
+    String servletPath;
+    HttpSession session;
+
+    FakeRequest(String method, Map<String, String> parameters) {
+      super(UNSUPPORTED_REQUEST);
+      this.method = method;
+      this.parameters = parameters;
+    }
+
+    @Override
+    public String getMethod() {
+      return method;
+    }
+
+    @Override
+    public String getParameter(String name) {
+      return parameters.get(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return headers.get(name);
+    }
+
+    @Override
+    public String getServletPath() {
+      return servletPath;
+    }
+
+    @Override
+    public HttpSession getSession() {
+      return session;
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+      return session;
+    }
+  }
+
+  /**
+   * A response that records its status and discards its headers and body.
+   */
+  private static final class FakeResponse extends HttpServletResponseWrapper {
+    private final PrintWriter writer = new PrintWriter(CharStreams.nullWriter());
+    int status = HttpServletResponse.SC_OK;
+
+    FakeResponse() {
+      super(UNSUPPORTED_RESPONSE);
+    }
+
+    @Override
+    public void setStatus(int status) {
+      this.status = status;
+    }
+
+    @Override
+    public void sendError(int status) {
+      this.status = status;
+    }
+
+    @Override
+    public void sendError(int status, String message) {
+      this.status = status;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+      this.status = HttpServletResponse.SC_FOUND;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {}
+
+    @Override
+    public void setContentType(String type) {}
+
+    @Override
+    public void setCharacterEncoding(String charset) {}
+
+    @Override
+    public PrintWriter getWriter() {
+      return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {}
+  }
+}
@@ -0,0 +1,152 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Writes new comment entities to Datastore. In write-behind mode, comments are added to a bounded
+ * in-memory queue and a background thread stores them in batches with a single multi-entity put,
+ * so posting a comment does not wait on Datastore. Otherwise each comment is stored as soon as it
+ * is written. Either way, the stored entities, which then have their keys, are passed to a
+ * listener.
+ */
+public final class CommentWriteBuffer implements AutoCloseable {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(CommentWriteBuffer.class.getName());
+  private static final int CAPACITY = 1000;
+  private static final int MAX_BATCH_SIZE = 100;
+  private static final long FLUSH_INTERVAL_MS = 100;
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private final DatastoreService datastore;
+  private final Consumer<List<Entity>> onStored;
+  private final BlockingQueue<Entity> pending = new ArrayBlockingQueue<>(CAPACITY);
+  private final Optional<ScheduledExecutorService> flusher;
+
+  // A batch that failed to be stored and is retried before taking more comments from the queue.
+  // Only accessed while holding the lock on this object.
+  private List<Entity> failedBatch = new ArrayList<>();
+
+  /**
+   * Creates a buffer that stores each comment as soon as it is written.
+   */
+  public CommentWriteBuffer(DatastoreService datastore, Consumer<List<Entity>> onStored) {
+    this.datastore = datastore;
+    this.onStored = onStored;
+    this.flusher = Optional.empty();
+  }
+
+  /**
+   * Creates a write-behind buffer whose comments are stored by a thread from the given factory.
+   */
+  public CommentWriteBuffer(
+      DatastoreService datastore, Consumer<List<Entity>> onStored, ThreadFactory threadFactory) {
+    this.datastore = datastore;
+    this.onStored = onStored;
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    executor.scheduleWithFixedDelay(
+        this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    this.flusher = Optional.of(executor);
+  }
+
+  /**
+   * Writes a comment entity. In write-behind mode, waits up to the timeout for room in the queue
+   * and returns false if the queue stayed full, so that callers can ask clients to back off.
+   */
+  public boolean write(Entity comment, long timeout, TimeUnit unit) throws InterruptedException {
+    if (!flusher.isPresent()) {
+      List<Entity> batch = new ArrayList<>();
+      batch.add(comment);
+      store(batch);
+      return true;
+    }
+
+    return pending.offer(comment, timeout, unit);
+  }
+
+  /**
+   * Stores every queued comment in batches.
+   */
+  public synchronized void flush() {
+    if (!failedBatch.isEmpty()) {
+      store(failedBatch);
+      failedBatch = new ArrayList<>();
+    }
+
+    List<Entity> batch = new ArrayList<>();
+    while (pending.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+      try {
+        store(batch);
+      } catch (RuntimeException e) {
+        failedBatch = batch;
+        throw e;
+      }
+      batch = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Stops the background thread and stores every comment still in the queue.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    if (flusher.isPresent()) {
+      flusher.get().shutdown();
+      flusher.get().awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      logger.severe("Could not store " + (failedBatch.size() + pending.size())
+          + " comments while shutting down: " + e.getMessage());
+    }
+  }
+
+  private void flushQuietly() {
+    // Exceptions would cancel the scheduled flushes, so log them and retry on the next flush.
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      logger.warning("Could not store comments: " + e.getMessage());
+    }
+  }
+
+  private void store(List<Entity> batch) {
+    datastore.put(batch);
+
+    // The comments are stored, so a failing listener must not get the batch retried and stored
+    // again.
+    try {
+      onStored.accept(batch);
+    } catch (RuntimeException e) {
+      logger.warning("Could not notify listeners of " + batch.size() + " stored comments: "
+          + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,59 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import java.util.OptionalLong;
+
+/**
+ * A version number for the set of stored comments, shared by every instance through Memcache and
+ * incremented whenever comments are stored or deleted. Responses built from the comments can be
+ * tagged with the version to tell whether they are still current.
+ *
+ * <p>If Memcache evicts the version, it starts again from the current time so that it does not
+ * repeat a version that was handed out before.
+ */
+public final class CommentsVersion {
+  private static final String KEY = "comments-version";
+
+  private final MemcacheService memcache;
+
+  public CommentsVersion(MemcacheService memcache) {
+    this.memcache = memcache;
+  }
+
+  /**
+   * Returns the current version, or an empty OptionalLong if Memcache is unavailable.
+   */
+  public OptionalLong get() {
+    Object version = memcache.get(KEY);
+    if (version == null) {
+      memcache.put(KEY, System.currentTimeMillis(), null, SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+      version = memcache.get(KEY);
+    }
+
+    return version == null ? OptionalLong.empty() : OptionalLong.of((long) version);
+  }
+
+  /**
+   * Marks the comments as changed and returns the new version, or an empty OptionalLong if
+   * Memcache is unavailable.
+   */
+  public OptionalLong increment() {
+    Long version = memcache.increment(KEY, 1, System.currentTimeMillis());
+    return version == null ? OptionalLong.empty() : OptionalLong.of(version);
+  }
+}
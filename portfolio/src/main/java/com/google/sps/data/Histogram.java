@@ -0,0 +1,162 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values in the style of HdrHistogram. Values are counted in
+ * buckets that split each power of two into eight, so recording a value is a few arithmetic
+ * operations and an atomic increment, and reported percentiles are within 12.5% of the true
+ * value.
+ */
+public final class Histogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // Enough buckets for every non-negative long.
+  private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder totalCount = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * The count, mean, maximum, and percentiles of the values recorded up to some point.
+   */
+  public static final class Snapshot {
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long max;
+
+    private Snapshot(long count, double mean, long p50, long p90, long p99, long max) {
+      this.count = count;
+      this.mean = mean;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean() {
+      return mean;
+    }
+
+    public long getPercentile50() {
+      return p50;
+    }
+
+    public long getPercentile90() {
+      return p90;
+    }
+
+    public long getPercentile99() {
+      return p99;
+    }
+
+    public long getMax() {
+      return max;
+    }
+  }
+
+  /**
+   * Records a value. Negative values are recorded as zero.
+   */
+  public void record(long value) {
+    long nonNegativeValue = Math.max(value, 0);
+    counts.incrementAndGet(bucketIndex(nonNegativeValue));
+    totalCount.increment();
+    sum.add(nonNegativeValue);
+    max.accumulateAndGet(nonNegativeValue, Math::max);
+  }
+
+  /**
+   * Returns the statistics of the values recorded so far. Values recorded while the snapshot is
+   * being taken may or may not be included.
+   */
+  public Snapshot snapshot() {
+    long[] snapshotCounts = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshotCounts[i] = counts.get(i);
+      count += snapshotCounts[i];
+    }
+
+    if (count == 0) {
+      return new Snapshot(0, 0, 0, 0, 0, 0);
+    }
+
+    // The highest value of a bucket can be above the highest recorded value.
+    long maxValue = max.get();
+    return new Snapshot(count, (double) sum.sum() / totalCount.sum(),
+        Math.min(percentile(snapshotCounts, count, 0.5), maxValue),
+        Math.min(percentile(snapshotCounts, count, 0.9), maxValue),
+        Math.min(percentile(snapshotCounts, count, 0.99), maxValue), maxValue);
+  }
+
+  /**
+   * Returns the highest value in the bucket holding the given percentile of the counted values.
+   */
+  private static long percentile(long[] counts, long totalCount, double percentile) {
+    long rank = (long) Math.ceil(percentile * totalCount);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return i + 1 < counts.length ? lowestValue(i + 1) - 1 : Long.MAX_VALUE;
+      }
+    }
+
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the index of the bucket counting a non-negative value. Values below the number of
+   * sub-buckets get a bucket each, and each higher power of two is split into sub-buckets by the
+   * value's next most significant bits.
+   */
+  private static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int group = exponent - SUB_BUCKET_BITS + 1;
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+    return group * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /**
+   * Returns the lowest value counted by the bucket with the given index.
+   */
+  private static long lowestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+
+    int group = index / SUB_BUCKET_COUNT;
+    long subBucket = index % SUB_BUCKET_COUNT;
+    return (subBucket + SUB_BUCKET_COUNT) << (group - 1);
+  }
+}
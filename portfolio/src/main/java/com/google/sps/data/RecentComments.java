@@ -0,0 +1,341 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Holds this instance's copy of the newest comment entities so that the first page of comments can
+ * usually be served without querying Datastore. Comments stored or deleted by this instance are
+ * applied as they happen, and the whole window is reloaded from Datastore when it is older than
+ * the resync interval, or when the comments version it was loaded at is out of date, to pick up
+ * changes made by other instances.
+ *
+ * <p>Pages are only served from memory when they can continue with the same Datastore cursors as
+ * pages queried from Datastore, so clients can page past the window without noticing.
+ */
+public final class RecentComments {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(RecentComments.class.getName());
+
+  // Matches the order of Datastore's newest-first query, which breaks ties by key.
+  private static final Comparator<Position> NEWEST_FIRST =
+      Comparator.comparingLong((Position position) -> position.timestamp)
+          .reversed()
+          .thenComparing(position -> position.key);
+
+  // Matches the order of Datastore's oldest-first query, which also breaks ties by ascending key,
+  // so it is not the reverse of the newest-first order.
+  private static final Comparator<Position> OLDEST_FIRST =
+      Comparator.comparingLong((Position position) -> position.timestamp)
+          .thenComparing(position -> position.key);
+
+  private final DatastoreService datastore;
+  private final int capacity;
+  private final long resyncIntervalMs;
+
+  private volatile Window window = new Window();
+  private volatile long lastResyncMillis = 0;
+  // The latest comments version seen by a request, and the version the window was loaded at.
+  private final AtomicLong observedVersion = new AtomicLong();
+  private volatile long resyncedVersion = 0;
+  private final AtomicBoolean resyncing = new AtomicBoolean();
+
+  // Changes made while the window is being reloaded, which are applied again to the reloaded
+  // window. Only accessed while holding the lock on this object.
+  private final List<Consumer<Window>> changesDuringResync = new ArrayList<>();
+
+  /**
+   * A page of comment entities served from memory along with the cursor to the next page, if
+   * there may be more comments after it.
+   */
+  public static final class Page {
+    private final List<Entity> entities;
+    private final Optional<Cursor> nextCursor;
+
+    private Page(List<Entity> entities, Optional<Cursor> nextCursor) {
+      this.entities = entities;
+      this.nextCursor = nextCursor;
+    }
+
+    public List<Entity> getEntities() {
+      return entities;
+    }
+
+    public Optional<Cursor> getNextCursor() {
+      return nextCursor;
+    }
+  }
+
+  /**
+   * Creates a read model of the newest comments that holds up to the given number of comments and
+   * reloads them from Datastore once they are older than the given interval.
+   */
+  public RecentComments(DatastoreService datastore, int capacity, long resyncIntervalMs) {
+    this.datastore = datastore;
+    this.capacity = capacity;
+    this.resyncIntervalMs = resyncIntervalMs;
+  }
+
+  /**
+   * Returns the first page of the newest comments, or an empty Optional if the page must be
+   * queried from Datastore instead.
+   */
+  public Optional<Page> getNewest(int limit) {
+    if (!resyncIfStale()) {
+      return Optional.empty();
+    }
+
+    Window current = window;
+    List<Entity> entities = new ArrayList<>(limit);
+    Optional<Cursor> lastCursor = Optional.empty();
+    Iterator<Entry> entries = current.entries.values().iterator();
+    while (entities.size() < limit && entries.hasNext()) {
+      Entry entry = entries.next();
+      entities.add(entry.entity);
+      lastCursor = entry.cursor;
+    }
+
+    if (!entries.hasNext() && current.complete) {
+      // There are no more comments after this page.
+      return Optional.of(new Page(entities, Optional.empty()));
+    }
+
+    if (entities.size() < limit) {
+      // The page has to be queried from Datastore to fill it with comments outside the window.
+      return Optional.empty();
+    }
+
+    // Comments added by this instance since the last resync have no cursor to continue from.
+    return lastCursor.isPresent() ? Optional.of(new Page(entities, lastCursor)) : Optional.empty();
+  }
+
+  /**
+   * Returns the first page of the oldest comments, or an empty Optional if the page must be
+   * queried from Datastore instead. Only served when the window holds every comment and they all
+   * fit on the page, since the window has no cursors for the oldest-first query.
+   */
+  public Optional<Page> getOldest(int limit) {
+    if (!resyncIfStale()) {
+      return Optional.empty();
+    }
+
+    Window current = window;
+    if (!current.complete || current.entries.size() > limit) {
+      return Optional.empty();
+    }
+
+    List<Position> positions = new ArrayList<>(current.entries.keySet());
+    if (positions.size() > limit) {
+      // Comments were added after the size was checked.
+      return Optional.empty();
+    }
+
+    positions.sort(OLDEST_FIRST);
+    List<Entity> entities = new ArrayList<>(positions.size());
+    for (Position position : positions) {
+      Entry entry = current.entries.get(position);
+      if (entry == null) {
+        // The comment was removed after the positions were copied.
+        continue;
+      }
+      entities.add(entry.entity);
+    }
+
+    return Optional.of(new Page(entities, Optional.empty()));
+  }
+
+  /**
+   * Adds newly stored comment entities, which must have their keys, to the window.
+   */
+  public synchronized void add(List<Entity> comments) {
+    apply(current -> comments.forEach(comment -> current.add(comment, Optional.empty())));
+  }
+
+  /**
+   * Removes deleted comments from the window.
+   */
+  public synchronized void remove(List<Key> keys) {
+    apply(current -> keys.forEach(current::remove));
+  }
+
+  /**
+   * Reloads the window from Datastore before it is next read.
+   */
+  public void invalidate() {
+    lastResyncMillis = 0;
+  }
+
+  /**
+   * Records the version that the comments version was incremented to for a change that this
+   * instance has already applied to the window, so that the change alone does not make the window
+   * out of date. A version that skips past changes made by other instances is not recorded.
+   */
+  public synchronized void recordLocalVersion(long version) {
+    if (version == resyncedVersion + 1) {
+      resyncedVersion = version;
+    }
+  }
+
+  /**
+   * Records the current comments version and reloads the window before it is next read if the
+   * version is ahead of the one the window is up to date with.
+   */
+  public void observeVersion(long version) {
+    // Requests can report versions out of order, so only ever move forward.
+    observedVersion.accumulateAndGet(version, Math::max);
+    if (version > resyncedVersion) {
+      invalidate();
+    }
+  }
+
+  private void apply(Consumer<Window> change) {
+    change.accept(window);
+    if (resyncing.get()) {
+      changesDuringResync.add(change);
+    }
+  }
+
+  /**
+   * Reloads the window if it is older than the resync interval. Returns false if the window has
+   * never been loaded and is being loaded by another request, which should query Datastore.
+   */
+  private boolean resyncIfStale() {
+    long lastResync = lastResyncMillis;
+    if (System.currentTimeMillis() - lastResync < resyncIntervalMs) {
+      return true;
+    }
+
+    // Only one request reloads the window while the others keep using the old one.
+    if (!resyncing.compareAndSet(false, true)) {
+      return lastResync != 0;
+    }
+
+    try {
+      resync();
+      return true;
+    } catch (RuntimeException e) {
+      logger.warning("Could not reload the recent comments: " + e.getMessage());
+      return false;
+    } finally {
+      synchronized (this) {
+        changesDuringResync.clear();
+        resyncing.set(false);
+      }
+    }
+  }
+
+  private void resync() {
+    long startMillis = System.currentTimeMillis();
+    long version = observedVersion.get();
+    Query query = new Query("Comment").addSort("timestamp", SortDirection.DESCENDING);
+    QueryResultIterator<Entity> results =
+        datastore.prepare(query).asQueryResultIterator(FetchOptions.Builder.withLimit(capacity));
+
+    // Remember the cursor after each comment so that pages served from memory can continue in
+    // Datastore.
+    Window reloaded = new Window();
+    while (results.hasNext()) {
+      Entity comment = results.next();
+      reloaded.add(comment, Optional.of(results.getCursor()));
+    }
+    reloaded.complete = reloaded.entries.size() < capacity;
+
+    synchronized (this) {
+      changesDuringResync.forEach(change -> change.accept(reloaded));
+      window = reloaded;
+      lastResyncMillis = startMillis;
+      // Changes recorded during the resync may have moved the version past the one read above.
+      resyncedVersion = Math.max(resyncedVersion, version);
+    }
+  }
+
+  /**
+   * The position of a comment in the newest-first order.
+   */
+  private static final class Position {
+    private final long timestamp;
+    private final Key key;
+
+    private Position(Entity comment) {
+      this.timestamp = (long) comment.getProperty("timestamp");
+      this.key = comment.getKey();
+    }
+  }
+
+  private static final class Entry {
+    private final Entity entity;
+    // The Datastore cursor after this comment in the newest-first query, if it is known.
+    private final Optional<Cursor> cursor;
+
+    private Entry(Entity entity, Optional<Cursor> cursor) {
+      this.entity = entity;
+      this.cursor = cursor;
+    }
+  }
+
+  /**
+   * The newest comments, which can be read without locking. Only changed while holding the lock
+   * on the enclosing read model or before being published.
+   */
+  private final class Window {
+    private final ConcurrentSkipListMap<Position, Entry> entries =
+        new ConcurrentSkipListMap<>(NEWEST_FIRST);
+    private final Map<Key, Position> positions = new ConcurrentHashMap<>();
+    // Whether the window holds every comment in Datastore.
+    private volatile boolean complete = true;
+
+    private void add(Entity comment, Optional<Cursor> cursor) {
+      Position position = new Position(comment);
+      if (positions.putIfAbsent(comment.getKey(), position) != null) {
+        return;
+      }
+      entries.put(position, new Entry(comment, cursor));
+
+      // Drop the oldest comments once the window is full.
+      while (entries.size() > capacity) {
+        Map.Entry<Position, Entry> oldest = entries.pollLastEntry();
+        positions.remove(oldest.getKey().key);
+        complete = false;
+      }
+    }
+
+    private void remove(Key key) {
+      Position position = positions.remove(key);
+      if (position != null) {
+        entries.remove(position);
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long requests and the stages within them take, in microseconds, and how many calls
+ * each request makes to backend services, in histograms named after what they measure. Calls are
+ * attributed to the request running on the calling thread, or to the request that started the
+ * calling thread's task through {@link #forCurrentRequest}. Calls from other background threads
+ * are only counted towards the services' latencies.
+ */
+public final class RequestMetrics {
+  private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private final ThreadLocal<Map<String, Integer>> requestCallCounts = new ThreadLocal<>();
+
+  /**
+   * Times a stage of a request from when it is started until it is closed.
+   */
+  public final class Stage implements AutoCloseable {
+    private final Histogram histogram;
+    private final long startNanos = System.nanoTime();
+
+    private Stage(String name) {
+      this.histogram = getHistogram(name);
+    }
+
+    @Override
+    public void close() {
+      histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+  }
+
+  /**
+   * Starts timing a stage, recorded in the histogram with the given name when it is closed.
+   */
+  public Stage startStage(String name) {
+    return new Stage(name);
+  }
+
+  /**
+   * Starts counting the backend calls made by the request running on this thread.
+   */
+  public void startRequest() {
+    // Tasks started for the request may count calls from other threads.
+    requestCallCounts.set(new ConcurrentHashMap<>());
+  }
+
+  /**
+   * Records the latency of the request running on this thread under the given name, along with
+   * the number of calls it made to each service. Requests that made no calls to a service are not
+   * counted in that service's histogram.
+   */
+  public void endRequest(String name, long elapsedNanos) {
+    getHistogram("request " + name).record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+
+    Map<String, Integer> callCounts = requestCallCounts.get();
+    requestCallCounts.remove();
+    if (callCounts != null) {
+      for (Map.Entry<String, Integer> callCount : callCounts.entrySet()) {
+        getHistogram("calls per request " + name + " " + callCount.getKey())
+            .record(callCount.getValue());
+      }
+    }
+  }
+
+  /**
+   * Counts a call to a backend service towards the request running on this thread.
+   */
+  public void countCall(String service) {
+    Map<String, Integer> callCounts = requestCallCounts.get();
+    if (callCounts != null) {
+      callCounts.merge(service, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Wraps a task so that the backend calls it makes are counted towards the request running on
+   * this thread, whichever thread the task runs on.
+   */
+  public <T> Callable<T> forCurrentRequest(Callable<T> task) {
+    Map<String, Integer> callCounts = requestCallCounts.get();
+    if (callCounts == null) {
+      return task;
+    }
+
+    return () -> {
+      Map<String, Integer> previousCallCounts = requestCallCounts.get();
+      requestCallCounts.set(callCounts);
+      try {
+        return task.call();
+      } finally {
+        if (previousCallCounts == null) {
+          requestCallCounts.remove();
+        } else {
+          requestCallCounts.set(previousCallCounts);
+        }
+      }
+    };
+  }
+
+  /**
+   * Records how long a call to a backend service took.
+   */
+  public void recordCallLatency(String service, long elapsedNanos) {
+    getHistogram("call " + service).record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+  }
+
+  /**
+   * Returns the statistics of every histogram, sorted by name.
+   */
+  public SortedMap<String, Histogram.Snapshot> snapshot() {
+    SortedMap<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+    histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+    return snapshots;
+  }
+
+  private Histogram getHistogram(String name) {
+    // Avoid locking in computeIfAbsent when the histogram already exists.
+    Histogram histogram = histograms.get(name);
+    return histogram != null ? histogram : histograms.computeIfAbsent(name, key -> new Histogram());
+  }
+}
@@ -0,0 +1,83 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent loads of the same key into one. The first caller for a key runs the load,
+ * and callers that ask for the key while it is running wait for and share its result. Nothing is
+ * kept once the load finishes, so the next caller loads the key again.
+ */
+public final class SingleFlight<K, V> {
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the result of the load that is running for the key, or runs the given load if there
+   * is none. If the load throws, every caller waiting for it gets the same exception.
+   */
+  public V get(K key, Supplier<V> load) {
+    CompletableFuture<V> result = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, result);
+    if (running != null) {
+      return join(running);
+    }
+
+    try {
+      V value = load.get();
+      result.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      result.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, result);
+    }
+  }
+
+  /**
+   * Returns the number of keys that are being loaded.
+   */
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * Returns the number of callers waiting for the running load of the key, so tests can tell when
+   * callers have joined a load.
+   */
+  int waiterCount(K key) {
+    CompletableFuture<V> running = inFlight.get(key);
+    return running == null ? 0 : running.getNumberOfDependents();
+  }
+
+  private static <V> V join(CompletableFuture<V> result) {
+    try {
+      return result.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A bounded, thread-safe cache of translated comment texts. Entries are keyed by the comment's ID,
+ * its text, and the target language, and the least recently used entries are evicted once the
+ * cache is full.
+ */
+public final class TranslationCache {
+  private final Cache<Key, String> translations;
+
+  public TranslationCache(long maximumSize) {
+    translations = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /**
+   * Returns the cached translation of a comment to the given language, if there is one.
+   */
+  public Optional<String> get(long commentId, String commentText, String languageCode) {
+    return Optional.ofNullable(
+        translations.getIfPresent(new Key(commentId, commentText, languageCode)));
+  }
+
+  /**
+   * Caches the translation of a comment to the given language.
+   */
+  public void put(long commentId, String commentText, String languageCode, String translation) {
+    translations.put(new Key(commentId, commentText, languageCode), translation);
+  }
+
+  /**
+   * Returns the hit and miss counts of the cache since it was created.
+   */
+  public CacheStats stats() {
+    return translations.stats();
+  }
+
+  /**
+   * Identifies a single comment text translated to a single language. The whole text is compared,
+   * rather than a hash of it, so that an edited comment is never served a stale translation.
+   */
+  private static final class Key {
+    private final long commentId;
+    private final String commentText;
+    private final String languageCode;
+
+    Key(long commentId, String commentText, String languageCode) {
+      this.commentId = commentId;
+      this.commentText = commentText;
+      this.languageCode = languageCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+
+      Key key = (Key) other;
+      return commentId == key.commentId && Objects.equals(commentText, key.commentText)
+          && Objects.equals(languageCode, key.languageCode);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(commentId, commentText, languageCode);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes the UserInfo entities that hold users' display names. UserInfo entities are
+ * keyed by user ID, so names are looked up by key rather than by query, and recently used names
+ * are cached in memory. Names are cached for a limited time because a rename handled by another
+ * instance does not invalidate this instance's cache.
+ */
+public final class UserInfoStore {
+  private static final long MAX_CACHED_NAMES = 1000;
+  private static final long CACHE_EXPIRATION_MINUTES = 5;
+
+  private final DatastoreService datastore;
+  private final Cache<String, String> names =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_CACHED_NAMES)
+          .expireAfterWrite(CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+          .build();
+
+  public UserInfoStore(DatastoreService datastore) {
+    this.datastore = datastore;
+  }
+
+  /**
+   * Returns the name of the user with the given ID, or an empty Optional if a name has not been
+   * set.
+   */
+  public Optional<String> getName(String id) {
+    String cachedName = names.getIfPresent(id);
+    if (cachedName != null) {
+      return Optional.of(cachedName);
+    }
+
+    return loadName(id);
+  }
+
+  /**
+   * Reads the name of the user with the given ID from Datastore, bypassing the cache, which may
+   * hold a name that was changed by another instance. Returns an empty Optional if a name has not
+   * been set.
+   */
+  public Optional<String> loadName(String id) {
+    Entity entity;
+    try {
+      entity = datastore.get(createKey(id));
+    } catch (EntityNotFoundException e) {
+      return Optional.empty();
+    }
+
+    String name = (String) entity.getProperty("name");
+    names.put(id, name);
+    return Optional.of(name);
+  }
+
+  /**
+   * Inserts a new user info entity with the given name in Datastore or updates the name in an
+   * existing entity, and replaces the cached name.
+   */
+  public void putName(String id, String name) {
+    // Create an entity with a kind of UserInfo that has the user's ID as an identifier.
+    Entity entity = new Entity(createKey(id));
+    entity.setProperty("id", id);
+    entity.setProperty("name", name);
+
+    // The put() function upserts the entity based on ID.
+    datastore.put(entity);
+    names.put(id, name);
+  }
+
+  /**
+   * Returns the key that comments are sorted by when sorted by the name of their author, so that
+   * names differing only in case or in equivalent Unicode forms are sorted together.
+   */
+  public static String createSortKey(String name) {
+    return Normalizer.normalize(name, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+  }
+
+  private static Key createKey(String id) {
+    return KeyFactory.createKey("UserInfo", id);
+  }
+}
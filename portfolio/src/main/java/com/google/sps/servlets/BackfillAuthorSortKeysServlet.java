@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet with a POST handler that lets administrators of the application start the one-time
+ * background job filling in the author sort key of comments stored before the sort key existed.
+ * Until it has run, those comments are left out when sorting by name.
+ */
+@WebServlet("/admin/backfill-author-sort-keys")
+public class BackfillAuthorSortKeysServlet extends HttpServlet {
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
+  /**
+   * Starts the backfill, or responds with a conflict if it has already been started.
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = services.getUserService();
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    if (!UpdateCommentAuthorsServlet.startBackfill(services.getDatastore())) {
+      response.sendError(
+          HttpServletResponse.SC_CONFLICT, "The backfill has already been started.");
+      return;
+    }
+
+    response.setStatus(HttpServletResponse.SC_ACCEPTED);
+  }
+}
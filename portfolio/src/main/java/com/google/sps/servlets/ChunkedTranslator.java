@@ -0,0 +1,219 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.Translation;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.sps.data.RequestMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Translates a list of texts with several smaller translation API calls made in parallel, so that
+ * one slow call only delays its own texts. Texts are split into chunks bounded by their count and
+ * total length, and each chunk that is not translated before the deadline is given up on.
+ *
+ * <p>The chunks of one call run on threads created for that call by a factory obtained for the
+ * request making the call, since App Engine threads cannot outlive the request that created them.
+ * Without a factory, such as outside of a request, the chunks are translated one after another on
+ * the calling thread, and the chunks that have not started by the deadline are given up on.
+ * Backend calls made by the chunks count towards the calling request.
+ */
+final class ChunkedTranslator {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(ChunkedTranslator.class.getName());
+
+  private final Supplier<Translate> translate;
+  // Returns the thread factory for the request running on the calling thread, or null if there is
+  // none.
+  private final Supplier<ThreadFactory> threadFactory;
+  private final RequestMetrics requestMetrics;
+  private final int maxChunkTexts;
+  private final int maxChunkChars;
+  private final int maxThreads;
+  private final long timeoutMs;
+
+  ChunkedTranslator(Supplier<Translate> translate, Supplier<ThreadFactory> threadFactory,
+      RequestMetrics requestMetrics, int maxChunkTexts, int maxChunkChars, int maxThreads,
+      long timeoutMs) {
+    this.translate = translate;
+    this.threadFactory = threadFactory;
+    this.requestMetrics = requestMetrics;
+    this.maxChunkTexts = maxChunkTexts;
+    this.maxChunkChars = maxChunkChars;
+    this.maxThreads = maxThreads;
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * Translates the texts to the given language and returns the translations in the same order. A
+   * text whose chunk failed or was not translated in time is returned as an empty Optional.
+   */
+  List<Optional<String>> translate(List<String> texts, String languageCode) {
+    List<List<String>> chunks = split(texts);
+    // Every chunk starts at about the same time, so they share one deadline.
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    ThreadFactory requestThreadFactory = threadFactory.get();
+    List<Optional<List<Translation>>> chunkTranslations = requestThreadFactory == null
+        ? translateInline(chunks, languageCode, deadlineNanos)
+        : translateInParallel(chunks, languageCode, deadlineNanos, requestThreadFactory);
+
+    List<Optional<String>> translatedTexts = new ArrayList<>(texts.size());
+    for (int i = 0; i < chunks.size(); i++) {
+      Optional<List<Translation>> translations = chunkTranslations.get(i);
+      for (int j = 0; j < chunks.get(i).size(); j++) {
+        int index = j;
+        translatedTexts.add(translations.map(list -> list.get(index).getTranslatedText()));
+      }
+    }
+    return translatedTexts;
+  }
+
+  private List<Optional<List<Translation>>> translateInParallel(List<List<String>> chunks,
+      String languageCode, long deadlineNanos, ThreadFactory requestThreadFactory) {
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(chunks.size(), maxThreads), requestThreadFactory);
+    try {
+      List<Future<List<Translation>>> results = new ArrayList<>(chunks.size());
+      for (List<String> chunk : chunks) {
+        results.add(submit(executor, chunk, languageCode));
+      }
+
+      List<Optional<List<Translation>>> chunkTranslations = new ArrayList<>(chunks.size());
+      for (Future<List<Translation>> result : results) {
+        chunkTranslations.add(await(result, deadlineNanos));
+      }
+      return chunkTranslations;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Translates the chunks one after another on the calling thread. A call that is running cannot
+   * be given up on, so the deadline is only checked before each chunk starts, and the chunks left
+   * once it has passed are not translated.
+   */
+  private List<Optional<List<Translation>>> translateInline(
+      List<List<String>> chunks, String languageCode, long deadlineNanos) {
+    List<Optional<List<Translation>>> chunkTranslations = new ArrayList<>(chunks.size());
+    for (List<String> chunk : chunks) {
+      if (System.nanoTime() - deadlineNanos >= 0) {
+        logger.warning("Translation timed out; sending the original texts instead.");
+        chunkTranslations.add(Optional.empty());
+        continue;
+      }
+
+      try {
+        chunkTranslations.add(Optional.of(translateChunk(chunk, languageCode)));
+      } catch (RuntimeException e) {
+        logger.warning("Could not translate comments: " + e);
+        chunkTranslations.add(Optional.empty());
+      }
+    }
+
+    return chunkTranslations;
+  }
+
+  /**
+   * Splits the texts into consecutive chunks of at most maxChunkTexts texts and, unless a single
+   * text is longer, at most maxChunkChars characters.
+   */
+  private List<List<String>> split(List<String> texts) {
+    List<List<String>> chunks = new ArrayList<>();
+    int start = 0;
+    int chars = 0;
+    for (int i = 0; i < texts.size(); i++) {
+      int length = texts.get(i).length();
+      if (i > start && (i - start == maxChunkTexts || chars + length > maxChunkChars)) {
+        chunks.add(texts.subList(start, i));
+        start = i;
+        chars = 0;
+      }
+      chars += length;
+    }
+    if (start < texts.size()) {
+      chunks.add(texts.subList(start, texts.size()));
+    }
+    return chunks;
+  }
+
+  /**
+   * Starts translating a chunk on the executor. If no thread can be started for it, such as
+   * outside of a request on App Engine, the chunk is translated on the calling thread instead.
+   */
+  private Future<List<Translation>> submit(
+      ExecutorService executor, List<String> chunk, String languageCode) {
+    try {
+      return executor.submit(
+          requestMetrics.forCurrentRequest(() -> translateChunk(chunk, languageCode)));
+    } catch (RejectedExecutionException | IllegalStateException e) {
+      logger.warning("Could not start a translation thread: " + e.getMessage());
+      try {
+        return CompletableFuture.completedFuture(translateChunk(chunk, languageCode));
+      } catch (RuntimeException translateException) {
+        CompletableFuture<List<Translation>> failure = new CompletableFuture<>();
+        failure.completeExceptionally(translateException);
+        return failure;
+      }
+    }
+  }
+
+  private List<Translation> translateChunk(List<String> chunk, String languageCode) {
+    // The translation API returns the translations in the same order as the texts.
+    List<Translation> translations = translate.get().translate(chunk,
+        Translate.TranslateOption.targetLanguage(languageCode),
+        Translate.TranslateOption.format("text"));
+    if (translations.size() != chunk.size()) {
+      throw new IllegalStateException(
+          "Got " + translations.size() + " translations for " + chunk.size() + " texts");
+    }
+    return translations;
+  }
+
+  /**
+   * Waits until the deadline for a chunk's translations, or returns an empty Optional if it failed
+   * or is still running.
+   */
+  private static Optional<List<Translation>> await(
+      Future<List<Translation>> result, long deadlineNanos) {
+    try {
+      long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+      return Optional.of(result.get(remainingNanos, TimeUnit.NANOSECONDS));
+    } catch (TimeoutException e) {
+      logger.warning("Translation timed out; sending the original texts instead.");
+      result.cancel(true);
+    } catch (ExecutionException e) {
+      logger.warning("Could not translate comments: " + e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.cancel(true);
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.gson.Gson;
+import com.google.sps.data.Comment;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet with a GET handler that keeps the response open and pushes comments stored after the
+ * client connected to the client as server-sent events, translated to the requested language.
+ * Clients reconnect automatically when the response completes.
+ *
+ * <p>New comments are found by polling the comments version in Memcache, which every instance
+ * increments when it stores comments, so clients see comments stored by any instance. The comments
+ * are queried and translated on the request thread. Each event's ID is the timestamp of its
+ * comment, which clients send back when they reconnect so that the next response continues after
+ * it.
+ *
+ * <p>App Engine standard buffers each response until it completes, so in production the response
+ * is completed after the first comments are sent and the stream behaves like a long poll.
+ */
+@WebServlet("/comment-stream")
+public class CommentStreamServlet extends HttpServlet {
+  // Shorter than App Engine's request deadline.
+  private static final long TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+  private static final long POLL_INTERVAL_MS = 1000;
+  // How long clients wait before reconnecting after the response completes.
+  private static final long RETRY_MS = 1000;
+  private static final int MAX_COMMENTS_PER_POLL = 50;
+  // Each open stream holds a request thread, so only a few are kept open on each instance.
+  private static final int MAX_OPEN_STREAMS = 4;
+
+  private final Gson gson = new Gson();
+  private final AtomicInteger openStreams = new AtomicInteger();
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String languageCode = request.getParameter("language-code");
+    if (languageCode == null || languageCode.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    }
+
+    // Continue after the last comment the client was sent, or start with comments stored from now
+    // on.
+    long since;
+    try {
+      String lastEventId = request.getHeader("Last-Event-ID");
+      since = lastEventId == null ? System.currentTimeMillis() : Long.parseLong(lastEventId);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    }
+
+    // Clients turned away can still load comments from /data.
+    if (openStreams.incrementAndGet() > MAX_OPEN_STREAMS) {
+      openStreams.decrementAndGet();
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      return;
+    }
+
+    try {
+      response.setContentType("text/event-stream");
+      response.setCharacterEncoding("UTF-8");
+      response.setHeader("Cache-Control", "no-cache");
+      PrintWriter writer = response.getWriter();
+      // An event with only an ID tells the client where to continue from if it reconnects before
+      // any comment is sent.
+      writer.write("retry: " + RETRY_MS + "\nid: " + since + "\n\n");
+      response.flushBuffer();
+
+      stream(writer, languageCode, since);
+    } finally {
+      openStreams.decrementAndGet();
+    }
+  }
+
+  /**
+   * Sends the comments stored after the given timestamp whenever the comments version changes,
+   * until the response times out, the client disconnects, or, in production, comments are sent.
+   */
+  private void stream(PrintWriter writer, String languageCode, long since) {
+    boolean oneEventPerResponse =
+        SystemProperty.environment.value() == SystemProperty.Environment.Value.Production;
+    long deadlineMillis = System.currentTimeMillis() + TIMEOUT_MS;
+    // The first poll always queries, since comments may have been stored while the client was
+    // reconnecting.
+    OptionalLong seenVersion = OptionalLong.empty();
+
+    for (boolean firstPoll = true; System.currentTimeMillis() < deadlineMillis; firstPoll = false) {
+      if (!firstPoll) {
+        try {
+          Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+
+      // Without Memcache, every poll has to query for new comments.
+      OptionalLong version = services.getCommentsVersion().get();
+      if (version.isPresent() && version.equals(seenVersion)) {
+        continue;
+      }
+      seenVersion = version;
+
+      List<Entity> entities = queryCommentsAfter(since);
+      if (entities.isEmpty()) {
+        // Nothing was stored since the last poll, or the comments changed because some were
+        // deleted or renamed.
+        continue;
+      }
+
+      List<Comment> comments =
+          DataServlet
+              .createComments(entities.stream(),
+                  DataServlet.translateComments(services, entities, languageCode).texts)
+              .collect(Collectors.toList());
+      for (int i = 0; i < comments.size(); i++) {
+        since = (long) entities.get(i).getProperty("timestamp");
+        writer.write("event: comment\nid: " + since + "\ndata: " + gson.toJson(comments.get(i))
+            + "\n\n");
+      }
+      writer.flush();
+      if (writer.checkError() || oneEventPerResponse) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the oldest comments stored after the given timestamp. A comment stored in the same
+   * millisecond as one that was already sent, but after it was sent, is not pushed, and is shown
+   * the next time the client loads the comments.
+   */
+  private List<Entity> queryCommentsAfter(long since) {
+    Query query =
+        new Query("Comment")
+            .setFilter(new FilterPredicate("timestamp", FilterOperator.GREATER_THAN, since))
+            .addSort("timestamp", SortDirection.ASCENDING);
+    return services.getDatastore().prepare(query).asList(
+        FetchOptions.Builder.withLimit(MAX_COMMENTS_PER_POLL));
+  }
+}
@@ -14,31 +14,41 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultList;
 import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
-import com.google.cloud.translate.Translate;
-import com.google.cloud.translate.TranslateOptions;
-import com.google.cloud.translate.Translation;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Streams;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import com.google.sps.data.Comment;
-import com.google.sps.servlets.NameServlet;
+import com.google.sps.data.RecentComments;
+import com.google.sps.data.RequestMetrics;
+import com.google.sps.data.SingleFlight;
+import com.google.sps.data.TranslationCache;
+import com.google.sps.data.UserInfoStore;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -46,30 +56,101 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * Servlet with a GET handler that loads information about the user and a list of
- * comments from Datastore, and a POST handler that stores a new comment.
+ * Servlet with a GET handler that loads a page of comments from Datastore, and a POST handler
+ * that stores a new comment. When the page first loads, it sends a GET request to /bootstrap
+ * instead, which also sends information about the user.
  */
-@WebServlet("/data")
+@WebServlet({"/data", "/bootstrap"})
 public class DataServlet extends HttpServlet {
   // Logs to System.err by default.
   private static final Logger logger = Logger.getLogger(DataServlet.class.getName());
   private static final int DEFAULT_MAX_COMMENTS = 10;
+  // The most comments that can be loaded in a single request. Clients page through the rest.
+  private static final int MAX_COMMENTS_PER_PAGE = 50;
+  // Datastore does not allow longer indexed strings.
+  private static final int MAX_COMMENT_BYTES = 1500;
+  // How long to wait for room in the write-behind queue before rejecting a comment.
+  private static final long WRITE_TIMEOUT_MS = 1000;
+  // The parameters of a GET request that change which comments are sent and how.
+  private static final ImmutableList<String> PAGE_PARAMETERS =
+      ImmutableList.of("max-comments", "sort-option", "language-code", "cursor");
+  // The path that also sends information about the user along with the comments.
+  private static final String BOOTSTRAP_PATH = "/bootstrap";
+
+  private final SingleFlight<List<Object>, CommentPage> commentPages = new SingleFlight<>();
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
 
   /**
-   * Loads the list of comments from Datastore and applies the requested limit, sort,
-   * and translation options. Sends either the logged-in user's email, name, and a
-   * logout link or a login link along with the translated comments as a response.
+   * Loads a page of comments from Datastore and applies the requested limit, sort,
+   * cursor, and translation options. Sends the translated comments and a cursor for the
+   * next page as a response. Requests to /bootstrap are also sent either the logged-in user's
+   * email, name, and a logout link or a login link.
    */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // Construct JSON containing information about the user and the comments.
-    JsonObject json = getLoginInformation();
-    json.add("comments", queryComments(request));
+    RequestMetrics metrics = services.getRequestMetrics();
+    // Pages after the first one only need the comments, so they skip the login information.
+    JsonObject loginInformation = new JsonObject();
+    if (BOOTSTRAP_PATH.equals(request.getServletPath())) {
+      try (RequestMetrics.Stage stage = metrics.startStage("stage /data login")) {
+        loginInformation = SessionIdentity.get(services, request);
+      }
+    }
+
+    // Tag the response with the comments version so that clients polling for new comments can be
+    // told nothing has changed before any comments are queried or translated.
+    OptionalLong version;
+    try (RequestMetrics.Stage stage = metrics.startStage("stage /data version")) {
+      version = services.getCommentsVersion().get();
+    }
+    Optional<String> eTag = Optional.empty();
+    if (version.isPresent()) {
+      services.getRecentComments().observeVersion(version.getAsLong());
+
+      eTag = Optional.of(createETag(version.getAsLong(), loginInformation, request));
+      if (matchesETag(request.getHeader("If-None-Match"), eTag.get())) {
+        setETag(response, eTag.get());
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+    }
+
+    CommentPage page = getCommentPage(request, metrics, version);
+    if (!page.fullyTranslated) {
+      // The comments that were not translated in time must be translated again by the next
+      // request rather than reused, even though the comments have not changed.
+      response.setHeader("Cache-Control", "no-store");
+    } else if (eTag.isPresent()) {
+      setETag(response, eTag.get());
+    }
 
-    // Send the JSON as the response.
+    Gson gson = services.getGson();
+
+    // Stream the JSON containing information about the user and the comments as the response
+    // rather than building it in memory first.
     response.setContentType("application/json; charset=UTF-8");
     response.setCharacterEncoding("UTF-8");
-    response.getWriter().println(json.toString());
+    try (JsonWriter writer = new JsonWriter(response.getWriter())) {
+      writer.beginObject();
+      for (Map.Entry<String, JsonElement> property : loginInformation.entrySet()) {
+        writer.name(property.getKey());
+        gson.toJson(property.getValue(), writer);
+      }
+
+      writeComments(writer, gson, page, metrics);
+      writer.endObject();
+    }
+  }
+
+  private static void setETag(HttpServletResponse response, String eTag) {
+    response.setHeader("ETag", eTag);
+    // The response depends on the logged-in user, and must be revalidated before it is reused.
+    response.setHeader("Cache-Control", "private, no-cache");
   }
 
   /**
@@ -77,14 +158,14 @@ public class DataServlet extends HttpServlet {
    */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    UserService userService = UserServiceFactory.getUserService();
+    UserService userService = services.getUserService();
     if (!userService.isUserLoggedIn()) {
       response.sendRedirect("/index.html");
       return;
     }
 
     String userId = userService.getCurrentUser().getUserId();
-    Optional<String> author = getUserName(userId);
+    Optional<String> author = services.getUserInfoStore().getName(userId);
 
     if (!author.isPresent()) {
       String email = userService.getCurrentUser().getEmail();
@@ -94,99 +175,215 @@ public class DataServlet extends HttpServlet {
     }
 
     String commentText = request.getParameter("comment");
+    if (!isValidComment(commentText)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid comment.");
+      return;
+    }
+
     long timestamp = System.currentTimeMillis();
 
     // Create an entity with a kind of Comment.
     Entity commentEntity = new Entity("Comment");
+    commentEntity.setProperty("userId", userId);
     commentEntity.setProperty("author", author.get());
+    commentEntity.setProperty("authorSortKey", UserInfoStore.createSortKey(author.get()));
     commentEntity.setProperty("commentText", commentText);
     commentEntity.setProperty("timestamp", timestamp);
 
-    // Store the comment entity in Datastore.
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    datastore.put(commentEntity);
+    // Store the comment entity in Datastore, or queue it to be stored in the background in
+    // write-behind mode. Ask the client to retry later if the queue is full.
+    boolean accepted;
+    try {
+      accepted = services.getCommentWriteBuffer().write(
+          commentEntity, WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      accepted = false;
+    }
+
+    if (!accepted) {
+      response.setHeader("Retry-After", "1");
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
   }
 
   /**
-   * Gets the user's name, email, and a link to logout if they are logged in
-   * or a link to log in otherwise.
+   * Checks that a comment is not blank and is short enough to be stored as an indexed string.
    */
-  private JsonObject getLoginInformation() {
-    JsonObject json = new JsonObject();
-    UserService userService = UserServiceFactory.getUserService();
-    String redirectUrl = "/";
-
-    if (userService.isUserLoggedIn()) {
-      String userId = userService.getCurrentUser().getUserId();
-
-      // Get the name of the logged-in user.
-      String name = getUserName(userId).orElseGet(() -> {
-        // If the user has logged in for the first time, set their name as their Google account
-        // nickname.
-        String defaultName = userService.getCurrentUser().getNickname();
-        NameServlet.upsertUserInfo(defaultName);
-        return defaultName;
-      });
-
-      String logoutUrl = userService.createLogoutURL(redirectUrl);
-      String userEmail = userService.getCurrentUser().getEmail();
-
-      json.addProperty("logoutUrl", logoutUrl);
-      json.addProperty("email", userEmail);
-      json.addProperty("name", name);
-    } else {
-      // Add a login link to the response if the user is not logged in.
-      json.addProperty("loginUrl", userService.createLoginURL(redirectUrl));
+  private static boolean isValidComment(String commentText) {
+    return commentText != null && !commentText.trim().isEmpty()
+        && commentText.getBytes(StandardCharsets.UTF_8).length <= MAX_COMMENT_BYTES;
+  }
+
+  /**
+   * Creates a weak entity tag for the response to a GET request from the comments version, the
+   * user's login information, and the request parameters that select the page of comments.
+   */
+  private static String createETag(
+      long version, JsonObject loginInformation, HttpServletRequest request) {
+    Hasher hasher = Hashing.sha256().newHasher().putString(
+        loginInformation.toString(), StandardCharsets.UTF_8);
+    for (String parameter : PAGE_PARAMETERS) {
+      // Separate the values so that different parameters cannot produce the same input.
+      hasher.putString(Strings.nullToEmpty(request.getParameter(parameter)), StandardCharsets.UTF_8)
+          .putChar('\0');
+    }
+
+    return "W/\"" + version + "-" + hasher.hash() + "\"";
+  }
+
+  /**
+   * Checks whether an If-None-Match header lists the entity tag, using weak comparison.
+   */
+  private static boolean matchesETag(String ifNoneMatch, String eTag) {
+    if (ifNoneMatch == null) {
+      return false;
     }
 
-    return json;
+    String opaqueTag = eTag.substring(2);
+    for (String tag : Splitter.on(',').trimResults().split(ifNoneMatch)) {
+      if (tag.equals("*") || tag.equals(eTag) || tag.equals(opaqueTag)) {
+        return true;
+      }
+    }
+
+    return false;
   }
 
   /**
-   * Gets a list of all the comments in JSON format translated to the selected language.
+   * Returns the requested page of comments translated to the selected language.
    */
-  private JsonElement queryComments(HttpServletRequest request) {
-    // Query up to maxComments comment entities from Datastore with the user's specified sorting
-    // option.
+  private CommentPage getCommentPage(
+      HttpServletRequest request, RequestMetrics metrics, OptionalLong version) {
     int maxComments = getMaxCommentsToReturn(request);
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = createCommentQuery(request);
-    List<Entity> entities =
-        datastore.prepare(query).asList(FetchOptions.Builder.withLimit(maxComments));
+    if (version.isPresent()) {
+      // Concurrent requests for the same page of the same version of the comments share one query
+      // and translation. A client that stored a comment before reading this version is still sent
+      // it, because the version is only incremented after the comment is stored.
+      List<Object> key = Arrays.asList(version.getAsLong(), request.getParameter("sort-option"),
+          maxComments, request.getParameter("language-code"), request.getParameter("cursor"));
+      return commentPages.get(key, () -> loadComments(request, maxComments, metrics));
+    }
+    return loadComments(request, maxComments, metrics);
+  }
 
-    // Check if there are comments to translate.
-    if (entities.isEmpty()) {
-      return new JsonArray();
+  /**
+   * Writes a page of comments, along with a cursor to the next page if there may be more comments.
+   */
+  private static void writeComments(JsonWriter writer, Gson gson, CommentPage page,
+      RequestMetrics metrics) throws IOException {
+    writer.name("comments").beginArray();
+    try (RequestMetrics.Stage stage = metrics.startStage("stage /data write")) {
+      for (Comment comment : page.comments) {
+        gson.toJson(comment, Comment.class, writer);
+      }
+    }
+    writer.endArray();
+
+    if (page.nextCursor.isPresent()) {
+      writer.name("nextCursor").value(page.nextCursor.get());
+    }
+  }
+
+  /**
+   * Loads a page of comments and translates them to the selected language.
+   */
+  private CommentPage loadComments(
+      HttpServletRequest request, int maxComments, RequestMetrics metrics) {
+    // Serve the first page of the newest or oldest comments from memory when possible, and
+    // otherwise query up to maxComments comment entities from Datastore with the user's specified
+    // sorting option, starting after the previous page if a cursor was given.
+    RequestMetrics.Stage queryStage = metrics.startStage("stage /data query");
+    Optional<RecentComments.Page> page = getRecentCommentsPage(request, maxComments);
+
+    List<Entity> entities;
+    Optional<Cursor> nextCursor;
+    if (page.isPresent()) {
+      entities = page.get().getEntities();
+      nextCursor = page.get().getNextCursor();
     } else {
-      // Construct a stream of comment texts from the queried entities.
-      Stream<String> commentTexts =
-          entities.stream().map(entity -> (String) entity.getProperty("commentText"));
+      FetchOptions fetchOptions = FetchOptions.Builder.withLimit(maxComments);
+      getStartCursor(request).ifPresent(fetchOptions::startCursor);
+
+      PreparedQuery query = services.getDatastore().prepare(createCommentQuery(request));
+      QueryResultList<Entity> results;
+      try {
+        results = query.asQueryResultList(fetchOptions);
+      } catch (IllegalArgumentException e) {
+        // A well-formed cursor from a query with another sorting option is only rejected when the
+        // query runs. Start at the first comment, as for a malformed cursor.
+        logger.warning("Cursor does not match the query: " + request.getParameter("cursor"));
+        results = query.asQueryResultList(FetchOptions.Builder.withLimit(maxComments));
+      }
+      entities = results;
+
+      // A full page means that there may be more comments after it.
+      nextCursor = results.size() == maxComments ? Optional.of(results.getCursor())
+                                                 : Optional.empty();
+    }
+    queryStage.close();
 
+    List<Comment> comments = ImmutableList.of();
+    boolean fullyTranslated = true;
+    // Check if there are comments to translate.
+    if (!entities.isEmpty()) {
       // Translate the comments to the selected language, preserving order.
       String languageCode = request.getParameter("language-code");
-      Stream<String> translatedCommentTexts = translateComments(commentTexts, languageCode);
+      Translations translations;
+      try (RequestMetrics.Stage stage = metrics.startStage("stage /data translate")) {
+        translations = translateComments(services, entities, languageCode);
+      }
+      comments = createComments(entities.stream(), translations.texts)
+                     .collect(ImmutableList.toImmutableList());
+      fullyTranslated = translations.complete;
+    }
+
+    return new CommentPage(comments, nextCursor.map(Cursor::toWebSafeString), fullyTranslated);
+  }
 
-      List<Comment> comments = createComments(entities.stream(), translatedCommentTexts);
-      return convertToJsonElement(comments);
+  /**
+   * Returns the requested page of comments from the recent comments read model, or an empty
+   * Optional if it has to be queried from Datastore. Only the first page of the newest or oldest
+   * comments can be served from memory.
+   */
+  private Optional<RecentComments.Page> getRecentCommentsPage(
+      HttpServletRequest request, int maxComments) {
+    if (getStartCursor(request).isPresent()) {
+      return Optional.empty();
     }
+
+    String sortOption = request.getParameter("sort-option");
+    RecentComments recentComments = services.getRecentComments();
+    if ("newest".equals(sortOption)) {
+      return recentComments.getNewest(maxComments);
+    } else if ("oldest".equals(sortOption)) {
+      return recentComments.getOldest(maxComments);
+    }
+
+    return Optional.empty();
   }
 
   /**
-   * Returns the name of the user with id, or null if a name has not been set.
+   * Returns the cursor to start the page of comments at, or an empty Optional to start at the
+   * first comment if no valid cursor was given.
    */
-  private Optional<String> getUserName(String id) {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("UserInfo")
-                      .setFilter(new Query.FilterPredicate("id", Query.FilterOperator.EQUAL, id));
-    PreparedQuery results = datastore.prepare(query);
-
-    Entity entity = results.asSingleEntity();
-    return Optional.ofNullable(entity).map(nameEntity -> (String) nameEntity.getProperty("name"));
+  private Optional<Cursor> getStartCursor(HttpServletRequest request) {
+    String cursorString = request.getParameter("cursor");
+    if (cursorString == null || cursorString.isEmpty()) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(Cursor.fromWebSafeString(cursorString));
+    } catch (IllegalArgumentException e) {
+      logger.warning("Invalid cursor: " + cursorString);
+      return Optional.empty();
+    }
   }
 
   /**
-   * Returns the maximum number of comments selected by the user, or the default of 10 if the number
-   * was invalid.
+   * Returns the maximum number of comments selected by the user capped at the page size limit, or
+   * the default of 10 if the number was invalid.
    */
   private int getMaxCommentsToReturn(HttpServletRequest request) {
     // Get the input from the form.
@@ -207,7 +404,7 @@ public class DataServlet extends HttpServlet {
       return DEFAULT_MAX_COMMENTS;
     }
 
-    return maxComments;
+    return Math.min(maxComments, MAX_COMMENTS_PER_PAGE);
   }
 
   /**
@@ -223,53 +420,130 @@ public class DataServlet extends HttpServlet {
     } else if (sortOption.equals("oldest")) {
       return query.addSort("timestamp", SortDirection.ASCENDING);
     } else if (sortOption.equals("name")) {
-      return query.addSort("author", SortDirection.ASCENDING);
+      // Served by the composite index in datastore-indexes.xml. The sort key is kept up to date
+      // with renames by UpdateCommentAuthorsServlet.
+      return query.addSort("authorSortKey", SortDirection.ASCENDING)
+          .addSort("timestamp", SortDirection.DESCENDING);
     }
 
     return query;
   }
 
   /**
-   * Translates a stream of comment texts to the specified language code and returns a
-   * stream of the translated comment texts.
+   * Translates the texts of a list of comment entities to the specified language code and returns
+   * the translated comment texts in the same order as the entities. Comments already
+   * written in the target language are returned as is, translations stored at write time are used
+   * when present, and only the comments that are not already in the translation cache are sent to
+   * the translation API. Comments that the translation API fails to translate in time are returned
+   * untranslated, and the translations are marked incomplete.
    */
-  private Stream<String> translateComments(Stream<String> comments, String languageCode) {
-    // Convert the stream of comment texts into a list since the translation API takes in lists.
-    List<String> commentTexts = comments.collect(Collectors.toList());
-
-    // Translate the list of comment texts.
-    // The translation API ensures the comments are in the same order after translating.
-    Translate translate = TranslateOptions.getDefaultInstance().getService();
-    List<Translation> translations =
-        translate.translate(commentTexts, Translate.TranslateOption.targetLanguage(languageCode),
-            Translate.TranslateOption.format("text"));
-
-    // Map the translations to a stream of strings.
-    return translations.stream().map(Translation::getTranslatedText);
+  static Translations translateComments(
+      ServiceRegistry services, List<Entity> entities, String languageCode) {
+    TranslationCache translationCache = services.getTranslationCache();
+    String[] translatedTexts = new String[entities.size()];
+
+    // Look up each comment in the cache and remember the positions of the ones that still need to
+    // be translated.
+    boolean complete = true;
+    List<Integer> uncachedIndices = new ArrayList<>();
+    List<String> uncachedTexts = new ArrayList<>();
+    for (int i = 0; i < entities.size(); i++) {
+      Entity entity = entities.get(i);
+      String commentText = (String) entity.getProperty("commentText");
+
+      // Skip comments whose detected language is already the target language.
+      if (Objects.equals(languageCode, entity.getProperty("languageCode"))) {
+        translatedTexts[i] = commentText;
+        continue;
+      }
+
+      // Use the translation stored when the comment was written, if there is one.
+      Object storedText =
+          entity.getProperty(TranslateCommentServlet.getTranslationProperty(languageCode));
+      if (storedText != null) {
+        translatedTexts[i] = (String) storedText;
+        continue;
+      }
+
+      Optional<String> cachedText =
+          translationCache.get(entity.getKey().getId(), commentText, languageCode);
+
+      if (cachedText.isPresent()) {
+        translatedTexts[i] = cachedText.get();
+      } else {
+        uncachedIndices.add(i);
+        uncachedTexts.add(commentText);
+      }
+    }
+
+    if (!uncachedTexts.isEmpty()) {
+      // Translate the uncached comment texts in parallel chunks, preserving order.
+      List<Optional<String>> translations =
+          services.getChunkedTranslator().translate(uncachedTexts, languageCode);
+
+      // Merge the translations back into their original positions and cache them. Comments that
+      // could not be translated in time are sent in their original language and not cached, so
+      // that the next request tries again.
+      for (int i = 0; i < translations.size(); i++) {
+        int index = uncachedIndices.get(i);
+        Optional<String> translatedText = translations.get(i);
+        translatedTexts[index] = translatedText.orElse(uncachedTexts.get(i));
+        if (!translatedText.isPresent()) {
+          complete = false;
+        } else {
+          translationCache.put(entities.get(index).getKey().getId(), uncachedTexts.get(i),
+              languageCode, translatedText.get());
+        }
+      }
+    }
+
+    logger.fine("Translation cache " + translationCache.stats());
+    return new Translations(Arrays.stream(translatedTexts), complete);
+  }
+
+  /**
+   * Construct a stream of comments from the queried entities and translated comment texts.
+   */
+  static Stream<Comment> createComments(Stream<Entity> entities, Stream<String> translations) {
+    return Streams.zip(entities, translations, (entity, translation) -> {
+      long id = entity.getKey().getId();
+      String author = (String) entity.getProperty("author");
+      long timestamp = (long) entity.getProperty("timestamp");
+
+      return new Comment(id, author, translation, timestamp);
+    });
   }
 
   /**
-   * Construct a list of comments from the queried entities and translated comment texts.
+   * A page of comments ready to be sent, and the web-safe cursor to the next page if there may be
+   * more comments.
    */
-  private List<Comment> createComments(Stream<Entity> entities, Stream<String> translations) {
-    return Streams
-        .zip(entities, translations,
-            (entity, translation) -> {
-              long id = entity.getKey().getId();
-              String author = (String) entity.getProperty("author");
-              long timestamp = (long) entity.getProperty("timestamp");
-
-              return new Comment(id, author, translation, timestamp);
-            })
-        .collect(Collectors.toList());
+  private static final class CommentPage {
+    final List<Comment> comments;
+    final Optional<String> nextCursor;
+    // Whether every comment was translated, rather than sent in its original language because
+    // the translation API did not translate it in time.
+    final boolean fullyTranslated;
+
+    CommentPage(List<Comment> comments, Optional<String> nextCursor, boolean fullyTranslated) {
+      this.comments = comments;
+      this.nextCursor = nextCursor;
+      this.fullyTranslated = fullyTranslated;
+    }
   }
 
   /**
-   * Converts a List into a JsonElement using the Gson library.
+   * The translated texts of a list of comments, in the same order, and whether all of them were
+   * translated or some are in their original language because the translation API did not
+   * translate them in time.
    */
-  private static JsonElement convertToJsonElement(List list) {
-    Gson gson = new Gson();
-    JsonElement jsonElement = gson.toJsonTree(list);
-    return jsonElement;
+  static final class Translations {
+    final Stream<String> texts;
+    final boolean complete;
+
+    Translations(Stream<String> texts, boolean complete) {
+      this.texts = texts;
+      this.complete = complete;
+    }
   }
 }
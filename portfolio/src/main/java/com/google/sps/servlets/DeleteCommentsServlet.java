@@ -0,0 +1,193 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.sps.data.RecentComments;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet with a POST handler, called from the task queue, that deletes one batch of comments for
+ * a deletion job and queues the next batch. Each batch is its own task, so a failed batch is
+ * retried on its own and the job resumes where it left off.
+ */
+@WebServlet("/tasks/delete-comments")
+public class DeleteCommentsServlet extends HttpServlet {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(DeleteCommentsServlet.class.getName());
+  private static final String URL = "/tasks/delete-comments";
+  private static final int BATCH_SIZE = 500;
+
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from external requests, so its presence means the request
+    // came from the task queue.
+    if (request.getHeader("X-AppEngine-QueueName") == null) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    long jobId;
+    long batch;
+    try {
+      jobId = Long.parseLong(request.getParameter("job-id"));
+      // Tasks queued before batches were numbered start at the first batch.
+      String batchString = request.getParameter("batch");
+      batch = batchString == null ? 0 : Long.parseLong(batchString);
+    } catch (NumberFormatException e) {
+      // Returning successfully keeps the task queue from retrying a task that can never succeed.
+      logger.warning("Invalid deletion job id or batch: " + request.getParameter("job-id") + ", "
+          + request.getParameter("batch"));
+      return;
+    }
+
+    // A retried task whose batch was already counted has nothing left to do, since the next batch
+    // was queued in the same transaction that counted it.
+    DatastoreService datastore = services.getDatastore();
+    if (isBatchCounted(datastore, jobId, batch)) {
+      return;
+    }
+
+    // Only fetch the keys of the next batch of comments, starting after the previous batch.
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(BATCH_SIZE);
+    String cursor = request.getParameter("cursor");
+    if (cursor != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+
+    Query query = new Query("Comment").setKeysOnly();
+    QueryResultList<Entity> results = datastore.prepare(query).asQueryResultList(fetchOptions);
+
+    List<Key> keysToDelete = results.stream().map(Entity::getKey).collect(Collectors.toList());
+    datastore.delete(keysToDelete);
+    RecentComments recentComments = services.getRecentComments();
+    recentComments.remove(keysToDelete);
+    if (!keysToDelete.isEmpty()) {
+      services.getCommentsVersion().increment().ifPresent(recentComments::recordLocalVersion);
+    }
+
+    // A full batch means that there may be more comments to delete.
+    boolean done = keysToDelete.size() < BATCH_SIZE;
+    String nextCursor = done ? null : results.getCursor().toWebSafeString();
+    updateJob(datastore, jobId, batch, keysToDelete.size(), nextCursor);
+  }
+
+  /**
+   * Creates a deletion job entity, queues the job's first batch, and returns the job's ID.
+   */
+  static long startJob(DatastoreService datastore) {
+    Entity job = new Entity("DeletionJob");
+    job.setProperty("deletedCount", 0L);
+    job.setProperty("batchesCounted", 0L);
+    job.setProperty("done", false);
+    job.setProperty("timestamp", System.currentTimeMillis());
+    datastore.put(job);
+
+    long jobId = job.getKey().getId();
+    QueueFactory.getDefaultQueue().add(createTask(jobId, 0, null));
+    return jobId;
+  }
+
+  static Key createJobKey(long jobId) {
+    return KeyFactory.createKey("DeletionJob", jobId);
+  }
+
+  private static TaskOptions createTask(long jobId, long batch, String cursor) {
+    TaskOptions task = TaskOptions.Builder.withUrl(URL)
+                           .param("job-id", Long.toString(jobId))
+                           .param("batch", Long.toString(batch));
+    if (cursor != null) {
+      task.param("cursor", cursor);
+    }
+    return task;
+  }
+
+  /**
+   * Checks whether the job has already counted the batch. A job that no longer exists has not.
+   */
+  private static boolean isBatchCounted(DatastoreService datastore, long jobId, long batch) {
+    try {
+      return batch < getBatchesCounted(datastore.get(createJobKey(jobId)));
+    } catch (EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static long getBatchesCounted(Entity job) {
+    Object batchesCounted = job.getProperty("batchesCounted");
+    return batchesCounted == null ? 0 : (long) batchesCounted;
+  }
+
+  /**
+   * Adds the number of comments deleted by a batch to the job's progress and queues the next batch
+   * if there is a cursor to it. Both happen in one transaction, and a batch that the job has
+   * already counted is not counted again, so a retried task cannot count its batch twice.
+   */
+  private static void updateJob(
+      DatastoreService datastore, long jobId, long batch, long deleted, String nextCursor) {
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity job = datastore.get(transaction, createJobKey(jobId));
+      if (batch < getBatchesCounted(job)) {
+        return;
+      }
+
+      job.setProperty("deletedCount", (long) job.getProperty("deletedCount") + deleted);
+      job.setProperty("batchesCounted", batch + 1);
+      job.setProperty("done", nextCursor == null);
+      datastore.put(transaction, job);
+      if (nextCursor != null) {
+        QueueFactory.getDefaultQueue().add(
+            transaction, createTask(jobId, batch + 1, nextCursor));
+      }
+      transaction.commit();
+    } catch (EntityNotFoundException e) {
+      // Keep deleting the comments even though nobody can follow the job's progress.
+      logger.warning("Deletion job " + jobId + " no longer exists.");
+      if (nextCursor != null) {
+        QueueFactory.getDefaultQueue().add(createTask(jobId, batch + 1, nextCursor));
+      }
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+}
@@ -14,34 +14,86 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.common.collect.Iterables;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.gson.JsonObject;
 import java.io.IOException;
+import java.util.Optional;
+import java.util.logging.Logger;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * Servlet with a POST handler that deletes all existing comments from Datastore.
+ * Servlet with a POST handler that starts a background job deleting all existing comments from
+ * Datastore, and a GET handler that reports the progress of a deletion job.
  */
 @WebServlet("/delete-data")
 public class DeleteDataServlet extends HttpServlet {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(DeleteDataServlet.class.getName());
+
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
+  /**
+   * Starts deleting all comments in the background and responds immediately with the job's ID.
+   */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // Query all comment entities from Datastore.
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("Comment");
-    PreparedQuery results = datastore.prepare(query);
-
-    // Delete all comment entities from Datastore.
-    Iterable<Key> keysToDelete = Iterables.transform(results.asIterable(), Entity::getKey);
-    datastore.delete(keysToDelete);
+    long jobId = DeleteCommentsServlet.startJob(services.getDatastore());
+
+    // The batches may be deleted by other instances, so reload the recent comments from Datastore
+    // on the next read rather than serving comments that are being deleted.
+    services.getRecentComments().invalidate();
+
+    JsonObject json = new JsonObject();
+    json.addProperty("jobId", jobId);
+
+    response.setStatus(HttpServletResponse.SC_ACCEPTED);
+    response.setContentType("application/json;");
+    response.getWriter().println(services.getGson().toJson(json));
+  }
+
+  /**
+   * Sends the number of comments deleted so far by the job with the given ID and whether it is
+   * done.
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Optional<Entity> job = getJob(request.getParameter("job-id"));
+    if (!job.isPresent()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    JsonObject json = new JsonObject();
+    json.addProperty("jobId", job.get().getKey().getId());
+    json.addProperty("deletedCount", (long) job.get().getProperty("deletedCount"));
+    json.addProperty("done", (boolean) job.get().getProperty("done"));
+
+    response.setContentType("application/json;");
+    response.getWriter().println(services.getGson().toJson(json));
+  }
+
+  /**
+   * Returns the deletion job entity with the given ID, or an empty Optional if the ID is invalid or
+   * there is no such job.
+   */
+  private Optional<Entity> getJob(String jobIdString) {
+    try {
+      long jobId = Long.parseLong(jobIdString);
+      return Optional.of(services.getDatastore().get(DeleteCommentsServlet.createJobKey(jobId)));
+    } catch (NumberFormatException e) {
+      logger.warning("Could not convert to long: " + jobIdString);
+      return Optional.empty();
+    } catch (EntityNotFoundException e) {
+      return Optional.empty();
+    }
   }
 }
@@ -15,8 +15,6 @@
 package com.google.sps.servlets;
 
 import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
-import com.google.gson.Gson;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -28,24 +26,22 @@ import javax.servlet.http.HttpServletResponse;
  */
 @WebServlet("/login-status")
 public class LoginStatusServlet extends HttpServlet {
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    UserService userService = UserServiceFactory.getUserService();
+    UserService userService = services.getUserService();
 
     // Convert the login status to JSON.
-    String json = convertToJson(userService.isUserLoggedIn());
+    String json = services.getGson().toJson(userService.isUserLoggedIn());
 
     // Send the JSON as the response.
     response.setContentType("application/json;");
     response.getWriter().println(json);
   }
-
-  /**
-   * Converts a boolean value into a JSON string using the Gson library.
-   */
-  private static String convertToJson(boolean value) {
-    Gson gson = new Gson();
-    String json = gson.toJson(value);
-    return json;
-  }
 }
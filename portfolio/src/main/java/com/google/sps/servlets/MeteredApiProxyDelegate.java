@@ -0,0 +1,114 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.util.concurrent.ForwardingFuture;
+import com.google.sps.data.RequestMetrics;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps the App Engine API delegate to count every call to an App Engine service, such as
+ * Datastore, Memcache, and the task queue, and time how long the calls take. Asynchronous calls
+ * are timed until their result is first read.
+ */
+final class MeteredApiProxyDelegate<E extends ApiProxy.Environment>
+    implements ApiProxy.Delegate<E> {
+  private final ApiProxy.Delegate<E> delegate;
+  private final RequestMetrics metrics;
+
+  private MeteredApiProxyDelegate(ApiProxy.Delegate<E> delegate, RequestMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Replaces the current API delegate with one that records its calls in the given metrics.
+   */
+  @SuppressWarnings("unchecked")
+  static void install(RequestMetrics metrics) {
+    ApiProxy.Delegate<ApiProxy.Environment> delegate = ApiProxy.getDelegate();
+    if (delegate != null && !(delegate instanceof MeteredApiProxyDelegate)) {
+      ApiProxy.setDelegate(new MeteredApiProxyDelegate<>(delegate, metrics));
+    }
+  }
+
+  @Override
+  public byte[] makeSyncCall(E environment, String packageName, String methodName, byte[] request)
+      throws ApiProxy.ApiProxyException {
+    metrics.countCall(packageName);
+    long startNanos = System.nanoTime();
+    try {
+      return delegate.makeSyncCall(environment, packageName, methodName, request);
+    } finally {
+      metrics.recordCallLatency(packageName, System.nanoTime() - startNanos);
+    }
+  }
+
+  @Override
+  public Future<byte[]> makeAsyncCall(E environment, String packageName, String methodName,
+      byte[] request, ApiProxy.ApiConfig apiConfig) {
+    metrics.countCall(packageName);
+    long startNanos = System.nanoTime();
+    Future<byte[]> result =
+        delegate.makeAsyncCall(environment, packageName, methodName, request, apiConfig);
+
+    AtomicBoolean recorded = new AtomicBoolean();
+    return new ForwardingFuture.SimpleForwardingFuture<byte[]>(result) {
+      @Override
+      public byte[] get() throws InterruptedException, ExecutionException {
+        try {
+          return super.get();
+        } finally {
+          recordLatency();
+        }
+      }
+
+      @Override
+      public byte[] get(long timeout, TimeUnit unit)
+          throws InterruptedException, ExecutionException, TimeoutException {
+        byte[] response = super.get(timeout, unit);
+        recordLatency();
+        return response;
+      }
+
+      private void recordLatency() {
+        if (isDone() && recorded.compareAndSet(false, true)) {
+          metrics.recordCallLatency(packageName, System.nanoTime() - startNanos);
+        }
+      }
+    };
+  }
+
+  @Override
+  public void log(E environment, ApiProxy.LogRecord record) {
+    delegate.log(environment, record);
+  }
+
+  @Override
+  public void flushLogs(E environment) {
+    delegate.flushLogs(environment);
+  }
+
+  @Override
+  public List<Thread> getRequestThreads(E environment) {
+    return delegate.getRequestThreads(environment);
+  }
+}
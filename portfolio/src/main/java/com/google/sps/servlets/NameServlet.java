@@ -14,11 +14,7 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
 import java.io.IOException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -36,9 +32,16 @@ public class NameServlet extends HttpServlet {
   // characters long.
   private static final Pattern validName = Pattern.compile("^[\\w ]{3,20}$");
 
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    UserService userService = UserServiceFactory.getUserService();
+    UserService userService = services.getUserService();
     if (!userService.isUserLoggedIn()) {
       response.sendRedirect("/index.html");
       return;
@@ -46,7 +49,14 @@ public class NameServlet extends HttpServlet {
 
     String name = request.getParameter("new-name");
     if (isValidName(name)) {
-      upsertUserInfo(name);
+      // Store the name under the logged-in user's ID, which also updates the cached name.
+      String id = userService.getCurrentUser().getUserId();
+      services.getUserInfoStore().putName(id, name);
+      // Show the new name the next time this session loads the page.
+      SessionIdentity.invalidate(request);
+
+      // Update the author of the user's existing comments in the background.
+      UpdateCommentAuthorsServlet.enqueue(id);
     }
   }
 
@@ -57,23 +67,4 @@ public class NameServlet extends HttpServlet {
   private static boolean isValidName(String name) {
     return validName.matcher(name).matches();
   }
-
-  /**
-   * Inserts a new user info entity with the given name in datastore or updates the name in an
-   * existing entity based on the logged-in user's ID.
-   */
-  public static void upsertUserInfo(String name) {
-    UserService userService = UserServiceFactory.getUserService();
-    String id = userService.getCurrentUser().getUserId();
-
-    // Create an entity with a kind of UserInfo that has the logged-in user's ID as an identifier.
-    Entity entity = new Entity("UserInfo", id);
-    entity.setProperty("id", id);
-    entity.setProperty("name", name);
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-
-    // The put() function upserts the entity based on ID.
-    datastore.put(entity);
-  }
 }
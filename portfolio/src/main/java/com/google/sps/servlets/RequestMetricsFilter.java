@@ -0,0 +1,72 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.sps.data.RequestMetrics;
+import java.io.IOException;
+import java.util.Set;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Filter that records the latency of every request to a servlet and the number of calls it makes
+ * to each backend service in the shared request metrics.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class RequestMetricsFilter implements Filter {
+  private RequestMetrics metrics;
+  // Requests are recorded by servlet path only for the paths that servlets are mapped to, so that
+  // requests for arbitrary paths cannot create arbitrarily many histograms.
+  private Set<String> servletPaths;
+
+  @Override
+  public void init(FilterConfig config) {
+    metrics = ServiceRegistry.get(config.getServletContext()).getRequestMetrics();
+
+    ImmutableSet.Builder<String> paths = ImmutableSet.builder();
+    for (ServletRegistration registration :
+        config.getServletContext().getServletRegistrations().values()) {
+      paths.addAll(registration.getMappings());
+    }
+    servletPaths = paths.build();
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    String path = httpRequest.getServletPath();
+    String name = httpRequest.getMethod() + " " + (servletPaths.contains(path) ? path : "other");
+
+    long startNanos = System.nanoTime();
+    metrics.startRequest();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      metrics.endRequest(name, System.nanoTime() - startNanos);
+    }
+  }
+
+  @Override
+  public void destroy() {}
+}
@@ -0,0 +1,265 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.TranslateOptions;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.Reflection;
+import com.google.gson.Gson;
+import com.google.sps.data.CommentWriteBuffer;
+import com.google.sps.data.CommentsVersion;
+import com.google.sps.data.RecentComments;
+import com.google.sps.data.RequestMetrics;
+import com.google.sps.data.TranslationCache;
+import com.google.sps.data.UserInfoStore;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+import javax.servlet.ServletContext;
+
+/**
+ * Holds the thread-safe services shared by every servlet in the application. A single registry is
+ * created when the application starts and stored in the servlet context, from which each servlet
+ * reads its services when it is initialized.
+ */
+final class ServiceRegistry implements AutoCloseable {
+  private static final String ATTRIBUTE_NAME = ServiceRegistry.class.getName();
+  private static final int MAX_CACHED_TRANSLATIONS = 1000;
+  private static final int MAX_RECENT_COMMENTS = 200;
+  private static final long RECENT_COMMENTS_RESYNC_INTERVAL_MS = 10_000;
+  // Comments are translated in parallel calls of at most this many texts and characters each.
+  private static final int MAX_TRANSLATION_CHUNK_TEXTS = 10;
+  private static final int MAX_TRANSLATION_CHUNK_CHARS = 5000;
+  private static final int MAX_TRANSLATION_THREADS = 5;
+  // How long to wait for translations before sending comments untranslated.
+  private static final long TRANSLATION_TIMEOUT_MS = 2000;
+  // The methods of the translation client that call the translation API.
+  private static final ImmutableSet<String> METERED_TRANSLATE_METHODS =
+      ImmutableSet.of("detect", "translate", "listSupportedLanguages");
+
+  // Set to true in appengine-web.xml to acknowledge new comments before they are stored.
+  private static final String WRITE_BEHIND_PROPERTY = "comments.write-behind";
+
+  private final DatastoreService datastore;
+  private final Supplier<Translate> translate;
+  private final UserService userService;
+  private final Gson gson = new Gson();
+  private final RequestMetrics requestMetrics = new RequestMetrics();
+  private final CommentsVersion commentsVersion =
+      new CommentsVersion(MemcacheServiceFactory.getMemcacheService());
+  private final TranslationCache translationCache;
+  private final ChunkedTranslator chunkedTranslator;
+  private final UserInfoStore userInfoStore;
+  private final CommentWriteBuffer commentWriteBuffer;
+  private final RecentComments recentComments;
+
+  /**
+   * Creates a registry around the given services that stores each new comment as soon as it is
+   * posted. The translation client is only created the first time it is used.
+   */
+  ServiceRegistry(
+      DatastoreService datastore, Supplier<Translate> translate, UserService userService) {
+    this(datastore, translate, userService, Optional.empty());
+  }
+
+  /**
+   * Creates a registry around the given services. If a thread factory is given, new comments are
+   * stored in the background by a thread from it.
+   */
+  ServiceRegistry(DatastoreService datastore, Supplier<Translate> translate,
+      UserService userService, Optional<ThreadFactory> writeBehindThreadFactory) {
+    this(datastore, translate, userService, writeBehindThreadFactory, MAX_CACHED_TRANSLATIONS);
+  }
+
+  /**
+   * Creates a registry around the given services whose translation cache holds up to the given
+   * number of translations.
+   */
+  ServiceRegistry(DatastoreService datastore, Supplier<Translate> translate,
+      UserService userService, Optional<ThreadFactory> writeBehindThreadFactory,
+      long maxCachedTranslations) {
+    this.datastore = datastore;
+    this.translate = Suppliers.memoize(() -> meter(translate.get(), requestMetrics));
+    this.userService = userService;
+    this.userInfoStore = new UserInfoStore(datastore);
+    this.translationCache = new TranslationCache(maxCachedTranslations);
+    this.chunkedTranslator = new ChunkedTranslator(this.translate,
+        ServiceRegistry::getRequestThreadFactory, requestMetrics, MAX_TRANSLATION_CHUNK_TEXTS,
+        MAX_TRANSLATION_CHUNK_CHARS, MAX_TRANSLATION_THREADS, TRANSLATION_TIMEOUT_MS);
+    this.recentComments =
+        new RecentComments(datastore, MAX_RECENT_COMMENTS, RECENT_COMMENTS_RESYNC_INTERVAL_MS);
+    this.commentWriteBuffer = writeBehindThreadFactory.isPresent()
+        ? new CommentWriteBuffer(datastore, this::onCommentsStored, writeBehindThreadFactory.get())
+        : new CommentWriteBuffer(datastore, this::onCommentsStored);
+  }
+
+  /**
+   * Creates a registry using the default App Engine and Cloud Translation services.
+   */
+  static ServiceRegistry createDefault() {
+    Optional<ThreadFactory> writeBehindThreadFactory = Boolean.getBoolean(WRITE_BEHIND_PROPERTY)
+        ? Optional.of(createBackgroundThreadFactory())
+        : Optional.empty();
+
+    return new ServiceRegistry(DatastoreServiceFactory.getDatastoreService(),
+        () -> TranslateOptions.getDefaultInstance().getService(),
+        UserServiceFactory.getUserService(), writeBehindThreadFactory);
+  }
+
+  /**
+   * Returns a factory for threads that outlive the request that created them. On App Engine these
+   * must be created through the ThreadManager, which requires basic or manual scaling.
+   */
+  private static ThreadFactory createBackgroundThreadFactory() {
+    return SystemProperty.environment.value() == null ? Executors.defaultThreadFactory()
+                                                      : ThreadManager.backgroundThreadFactory();
+  }
+
+  /**
+   * Returns a factory for threads that end with the request running on the calling thread. On App
+   * Engine these must be created through the ThreadManager, and only while handling that request,
+   * so a factory must be obtained for each request.
+   */
+  private static ThreadFactory getRequestThreadFactory() {
+    return SystemProperty.environment.value() == null ? Executors.defaultThreadFactory()
+                                                      : ThreadManager.currentRequestThreadFactory();
+  }
+
+  /**
+   * Wraps the translation client to count and time its calls to the translation API.
+   */
+  private static Translate meter(Translate translate, RequestMetrics metrics) {
+    return Reflection.newProxy(Translate.class, (proxy, method, args) -> {
+      if (!METERED_TRANSLATE_METHODS.contains(method.getName())) {
+        return invoke(translate, method, args);
+      }
+
+      metrics.countCall("translate");
+      long startNanos = System.nanoTime();
+      try {
+        return invoke(translate, method, args);
+      } finally {
+        metrics.recordCallLatency("translate", System.nanoTime() - startNanos);
+      }
+    });
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Returns the registry stored in the servlet context.
+   */
+  static ServiceRegistry get(ServletContext context) {
+    ServiceRegistry registry = (ServiceRegistry) context.getAttribute(ATTRIBUTE_NAME);
+    if (registry == null) {
+      throw new IllegalStateException("ServiceRegistry has not been registered.");
+    }
+
+    return registry;
+  }
+
+  /**
+   * Stores the registry in the servlet context so that servlets can read it.
+   */
+  void register(ServletContext context) {
+    context.setAttribute(ATTRIBUTE_NAME, this);
+  }
+
+  /**
+   * Stores any comments that have been posted but not stored yet.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    commentWriteBuffer.close();
+  }
+
+  /**
+   * Runs the follow-up work for newly stored comments, which have their keys by this point.
+   */
+  private void onCommentsStored(List<Entity> comments) {
+    recentComments.add(comments);
+    commentsVersion.increment().ifPresent(recentComments::recordLocalVersion);
+
+    for (Entity comment : comments) {
+      // Detect the comment's language, and translate it if eager translation is enabled, in the
+      // background.
+      TranslateCommentServlet.enqueue(comment.getKey().getId());
+    }
+  }
+
+  DatastoreService getDatastore() {
+    return datastore;
+  }
+
+  Translate getTranslate() {
+    return translate.get();
+  }
+
+  UserService getUserService() {
+    return userService;
+  }
+
+  Gson getGson() {
+    return gson;
+  }
+
+  TranslationCache getTranslationCache() {
+    return translationCache;
+  }
+
+  ChunkedTranslator getChunkedTranslator() {
+    return chunkedTranslator;
+  }
+
+  UserInfoStore getUserInfoStore() {
+    return userInfoStore;
+  }
+
+  CommentWriteBuffer getCommentWriteBuffer() {
+    return commentWriteBuffer;
+  }
+
+  CommentsVersion getCommentsVersion() {
+    return commentsVersion;
+  }
+
+  RequestMetrics getRequestMetrics() {
+    return requestMetrics;
+  }
+
+  RecentComments getRecentComments() {
+    return recentComments;
+  }
+}
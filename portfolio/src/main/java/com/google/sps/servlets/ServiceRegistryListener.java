@@ -0,0 +1,58 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.LifecycleManager;
+import java.util.logging.Logger;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Creates the application's shared services when it starts, before any servlet is initialized,
+ * and closes them when it stops so that no posted comments are lost.
+ */
+@WebListener
+public class ServiceRegistryListener implements ServletContextListener {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(ServiceRegistryListener.class.getName());
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    ServiceRegistry registry = ServiceRegistry.createDefault();
+    registry.register(event.getServletContext());
+
+    // Count and time the calls that requests make to App Engine services.
+    MeteredApiProxyDelegate.install(registry.getRequestMetrics());
+
+    // App Engine instances are not guaranteed to destroy the servlet context when they shut down,
+    // so also close the registry from the instance's shutdown hook.
+    LifecycleManager.getInstance().setShutdownHook(() -> close(registry));
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    close(ServiceRegistry.get(event.getServletContext()));
+  }
+
+  private static void close(ServiceRegistry registry) {
+    try {
+      registry.close();
+    } catch (InterruptedException e) {
+      logger.warning("Interrupted while storing the remaining comments.");
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.data.UserInfoStore;
+import java.io.Serializable;
+import java.util.Objects;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Builds the information about the user that the page shows with the comments: whether they are
+ * logged in, their name and email, and a link to log in or out. For a logged-in user, creating the
+ * links and looking up the name are only done once per session, and the result is kept in the
+ * session for as long as the same user is logged in. Logged-out visitors get no session, since
+ * each session is a Datastore entity and their information only needs a login link.
+ */
+final class SessionIdentity {
+  private static final String ATTRIBUTE_NAME = SessionIdentity.class.getName();
+
+  private SessionIdentity() {}
+
+  /**
+   * Returns the user's login information, from the session if it was already built for the user
+   * who is logged in now.
+   */
+  static JsonObject get(ServiceRegistry services, HttpServletRequest request) {
+    UserService userService = services.getUserService();
+    if (!userService.isUserLoggedIn()) {
+      return createLoginInformation(services, null);
+    }
+
+    String userId = userService.getCurrentUser().getUserId();
+    HttpSession session = request.getSession();
+    Object cached = session.getAttribute(ATTRIBUTE_NAME);
+    if (cached instanceof Identity && Objects.equals(((Identity) cached).userId, userId)) {
+      return JsonParser.parseString(((Identity) cached).json).getAsJsonObject();
+    }
+
+    JsonObject json = createLoginInformation(services, userId);
+    session.setAttribute(ATTRIBUTE_NAME, new Identity(userId, json.toString()));
+    return json;
+  }
+
+  /**
+   * Discards the login information kept in the request's session, such as after the user changes
+   * their name.
+   */
+  static void invalidate(HttpServletRequest request) {
+    HttpSession session = request.getSession(false);
+    if (session != null) {
+      session.removeAttribute(ATTRIBUTE_NAME);
+    }
+  }
+
+  /**
+   * Gets the user's name, email, and a link to logout if they are logged in
+   * or a link to log in otherwise.
+   */
+  private static JsonObject createLoginInformation(ServiceRegistry services, String userId) {
+    JsonObject json = new JsonObject();
+    UserService userService = services.getUserService();
+    String redirectUrl = "/";
+
+    json.addProperty("loggedIn", userId != null);
+    if (userId != null) {
+      // Get the name of the logged-in user.
+      UserInfoStore userInfoStore = services.getUserInfoStore();
+      String name = userInfoStore.getName(userId).orElseGet(() -> {
+        // If the user has logged in for the first time, set their name as their Google account
+        // nickname.
+        String defaultName = userService.getCurrentUser().getNickname();
+        userInfoStore.putName(userId, defaultName);
+        return defaultName;
+      });
+
+      String logoutUrl = userService.createLogoutURL(redirectUrl);
+      String userEmail = userService.getCurrentUser().getEmail();
+
+      json.addProperty("logoutUrl", logoutUrl);
+      json.addProperty("email", userEmail);
+      json.addProperty("name", name);
+    } else {
+      // Add a login link to the response if the user is not logged in.
+      json.addProperty("loginUrl", userService.createLoginURL(redirectUrl));
+    }
+
+    return json;
+  }
+
+  /**
+   * The login information built for a logged-in user. Sessions are stored in Datastore, so the
+   * information is kept as a JSON string.
+   */
+  private static final class Identity implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String userId;
+    private final String json;
+
+    Identity(String userId, String json) {
+      this.userId = userId;
+      this.json = json;
+    }
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.cloud.translate.Translate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet with a POST handler, called from the task queue, that detects the language of a newly
+ * stored comment and translates it into each of the configured eager translation languages. The
+ * language and translations are stored on the comment entity so that reads in those languages do
+ * not need to call the translation API, and posting a comment does not wait on it.
+ */
+@WebServlet("/tasks/translate-comment")
+public class TranslateCommentServlet extends HttpServlet {
+  // Logs to System.err by default.
+  private static final Logger logger = Logger.getLogger(TranslateCommentServlet.class.getName());
+  private static final String URL = "/tasks/translate-comment";
+
+  // Comma-separated list of language codes set in appengine-web.xml. Eager translation is disabled
+  // when it is empty.
+  private static final String EAGER_LANGUAGES_PROPERTY = "comments.eager-translation-languages";
+
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from external requests, so its presence means the request
+    // came from the task queue.
+    if (request.getHeader("X-AppEngine-QueueName") == null) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    long id;
+    try {
+      id = Long.parseLong(request.getParameter("id"));
+    } catch (NumberFormatException e) {
+      // Returning successfully keeps the task queue from retrying a task that can never succeed.
+      logger.warning("Invalid comment id: " + request.getParameter("id"));
+      return;
+    }
+
+    DatastoreService datastore = services.getDatastore();
+    Key key = KeyFactory.createKey("Comment", id);
+    Entity entity;
+    try {
+      entity = datastore.get(key);
+    } catch (EntityNotFoundException e) {
+      // The comment was deleted before it could be translated.
+      return;
+    }
+
+    // Detect and translate outside of the transaction to keep it short. A failed call throws,
+    // which makes the task queue retry the task.
+    String commentText = (String) entity.getProperty("commentText");
+    String languageCode = (String) entity.getProperty("languageCode");
+    boolean detected = languageCode == null;
+    if (detected) {
+      languageCode = services.getTranslate().detect(commentText).getLanguage();
+    }
+    Map<String, String> translations = translate(commentText, languageCode);
+
+    // Readers holding the comment without its language or translations reload it when the
+    // comments version changes.
+    if ((detected || !translations.isEmpty())
+        && storeTranslations(datastore, key, commentText, languageCode, translations)) {
+      services.getCommentsVersion().increment();
+    }
+  }
+
+  /**
+   * Adds a task that detects the language of the comment with the given ID and translates it if
+   * eager translation is enabled.
+   */
+  public static void enqueue(long commentId) {
+    QueueFactory.getDefaultQueue().add(
+        TaskOptions.Builder.withUrl(URL).param("id", Long.toString(commentId)));
+  }
+
+  /**
+   * Returns the name of the comment entity property holding its translation to a language.
+   */
+  public static String getTranslationProperty(String languageCode) {
+    return "translation_" + languageCode;
+  }
+
+  /**
+   * Returns the language codes that new comments are translated to when they are stored.
+   */
+  private static List<String> getEagerTranslationLanguages() {
+    String languages = System.getProperty(EAGER_LANGUAGES_PROPERTY, "");
+    return ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(languages));
+  }
+
+  /**
+   * Translates a comment's text into each eager translation language other than its own and
+   * returns a map from language code to translated text.
+   */
+  private Map<String, String> translate(String commentText, String sourceLanguageCode) {
+    Translate translate = services.getTranslate();
+    Map<String, String> translations = new HashMap<>();
+
+    for (String languageCode : getEagerTranslationLanguages()) {
+      if (languageCode.equals(sourceLanguageCode)) {
+        continue;
+      }
+
+      String translatedText =
+          translate
+              .translate(commentText, Translate.TranslateOption.targetLanguage(languageCode),
+                  Translate.TranslateOption.format("text"))
+              .getTranslatedText();
+      translations.put(languageCode, translatedText);
+    }
+
+    return translations;
+  }
+
+  /**
+   * Stores the language and translations on the comment entity in a transaction so that a comment
+   * deleted while it was being translated is not written back. Returns whether they were stored.
+   */
+  private static boolean storeTranslations(DatastoreService datastore, Key key, String commentText,
+      String languageCode, Map<String, String> translations) {
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity entity = datastore.get(transaction, key);
+
+      // Drop the translations if the comment text changed since it was translated.
+      if (!Objects.equals(commentText, entity.getProperty("commentText"))) {
+        return false;
+      }
+
+      if (languageCode != null) {
+        entity.setProperty("languageCode", languageCode);
+      }
+      for (Map.Entry<String, String> translation : translations.entrySet()) {
+        entity.setUnindexedProperty(
+            getTranslationProperty(translation.getKey()), translation.getValue());
+      }
+      datastore.put(transaction, entity);
+      transaction.commit();
+      return true;
+    } catch (EntityNotFoundException e) {
+      // The comment was deleted while it was being translated.
+      return false;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+}
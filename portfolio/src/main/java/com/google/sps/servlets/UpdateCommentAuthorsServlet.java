@@ -0,0 +1,213 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.sps.data.UserInfoStore;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet with a POST handler, called from the task queue, that copies a user's current name into
+ * the author and author sort key of one batch of their comments and queues the next batch, so
+ * that comments sorted by name stay correct after a rename. Without a user ID, it instead fills
+ * in the author sort key of comments stored before the sort key existed.
+ *
+ * <p>Comments stored before comments recorded their author's user ID cannot be matched to a user,
+ * because they only hold the author's name at the time and names are not unique. Renames do not
+ * reach these comments, which keep the old name; the backfill leaves their user ID unset rather
+ * than guessing it from the name.
+ */
+@WebServlet("/tasks/update-comment-authors")
+public class UpdateCommentAuthorsServlet extends HttpServlet {
+  // Logs to System.err by default.
+  private static final Logger logger =
+      Logger.getLogger(UpdateCommentAuthorsServlet.class.getName());
+  private static final String URL = "/tasks/update-comment-authors";
+  // The key name of the entity recording that the backfill was started.
+  private static final String BACKFILL_MARKER_NAME = "backfill-author-sort-keys";
+  private static final int BATCH_SIZE = 500;
+  // The most entity groups that a cross-group transaction can touch.
+  private static final int MAX_TRANSACTION_SIZE = 25;
+  // Other instances may post comments with a user's old name until their cached name expires, so
+  // their comments are updated again once it has.
+  private static final long NAME_CACHE_EXPIRATION_MS = TimeUnit.MINUTES.toMillis(6);
+
+  private ServiceRegistry services;
+
+  @Override
+  public void init() {
+    services = ServiceRegistry.get(getServletContext());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from external requests, so its presence means the request
+    // came from the task queue.
+    if (request.getHeader("X-AppEngine-QueueName") == null) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    String userId = request.getParameter("user-id");
+    Query query = new Query("Comment").setKeysOnly();
+    Optional<String> name = Optional.empty();
+    if (userId != null) {
+      // Read the name from Datastore since this instance may have cached an older name.
+      name = services.getUserInfoStore().loadName(userId);
+      if (!name.isPresent()) {
+        // Returning successfully keeps the task queue from retrying a task that can never succeed.
+        logger.warning("User " + userId + " does not have a name.");
+        return;
+      }
+      query.setFilter(new FilterPredicate("userId", FilterOperator.EQUAL, userId));
+    }
+
+    // Only fetch the keys of the next batch of comments, starting after the previous batch.
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(BATCH_SIZE);
+    String cursor = request.getParameter("cursor");
+    if (cursor != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+
+    DatastoreService datastore = services.getDatastore();
+    QueryResultList<Entity> results = datastore.prepare(query).asQueryResultList(fetchOptions);
+    List<Key> keys = results.stream().map(Entity::getKey).collect(Collectors.toList());
+
+    int updatedCount = 0;
+    for (List<Key> transactionKeys : Lists.partition(keys, MAX_TRANSACTION_SIZE)) {
+      updatedCount += updateAuthors(datastore, transactionKeys, name);
+    }
+    if (updatedCount > 0) {
+      services.getCommentsVersion().increment();
+    }
+
+    // A full batch means that there may be more comments to update.
+    if (keys.size() == BATCH_SIZE) {
+      TaskOptions task = createTask(userId).param("cursor", results.getCursor().toWebSafeString());
+      QueueFactory.getDefaultQueue().add(task);
+    }
+  }
+
+  /**
+   * Adds tasks that update the author of every comment by the given user to their current name.
+   */
+  static void enqueue(String userId) {
+    QueueFactory.getDefaultQueue().add(ImmutableList.of(
+        createTask(userId), createTask(userId).countdownMillis(NAME_CACHE_EXPIRATION_MS)));
+  }
+
+  /**
+   * Adds the task that fills in the author sort key of older comments, unless it has been added
+   * before. A marker entity records that the backfill was started, and is stored in the same
+   * transaction as the task is added so that the backfill is only started once. Returns whether
+   * the task was added.
+   */
+  static boolean startBackfill(DatastoreService datastore) {
+    Key markerKey = KeyFactory.createKey("Migration", BACKFILL_MARKER_NAME);
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      try {
+        datastore.get(transaction, markerKey);
+        return false;
+      } catch (EntityNotFoundException e) {
+        // The backfill has not been started yet.
+      }
+
+      Entity marker = new Entity(markerKey);
+      marker.setProperty("timestamp", System.currentTimeMillis());
+      datastore.put(transaction, marker);
+      QueueFactory.getDefaultQueue().add(transaction, createTask(null));
+      transaction.commit();
+      return true;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  private static TaskOptions createTask(String userId) {
+    TaskOptions task = TaskOptions.Builder.withUrl(URL);
+    if (userId != null) {
+      task.param("user-id", userId);
+    }
+
+    return task;
+  }
+
+  /**
+   * Sets the author of each comment to the given name, or keeps its author if no name is given,
+   * and updates its sort key. The comments are updated in a transaction so that translations
+   * stored at the same time are not overwritten. Returns the number of comments that changed.
+   */
+  private static int updateAuthors(
+      DatastoreService datastore, List<Key> keys, Optional<String> name) {
+    Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+    try {
+      // Comments deleted since they were queried are left out.
+      Map<Key, Entity> comments = datastore.get(transaction, keys);
+
+      List<Entity> changedComments = new ArrayList<>();
+      for (Entity comment : comments.values()) {
+        String author = name.orElse((String) comment.getProperty("author"));
+        String sortKey = UserInfoStore.createSortKey(author);
+        if (Objects.equals(author, comment.getProperty("author"))
+            && Objects.equals(sortKey, comment.getProperty("authorSortKey"))) {
+          continue;
+        }
+
+        comment.setProperty("author", author);
+        comment.setProperty("authorSortKey", sortKey);
+        changedComments.add(comment);
+      }
+
+      datastore.put(transaction, changedComments);
+      transaction.commit();
+      return changedComments.size();
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+}
@@ -139,14 +139,70 @@ function updateColorTheme(backgroundTheme) {
       '--select-bg-color', backgroundTheme.selectBgColor);
 }
 
+// Cursor to the next page of comments, or undefined if there are no more.
+let nextCommentsCursor;
+
+// Stream of comments posted after the comments section was loaded.
+let commentStream;
+
 /**
  * Displays either the form to post a comment if the user is logged in or a link
- * to login if they are not and displays the list of comments.
+ * to login if they are not and displays the first page of comments.
  */
 async function loadCommentsSection() {
   // Set the cursor to the loading icon.
   document.body.style.cursor = 'wait';
 
+  // Fetch the login status along with the first page of comments.
+  const json = await fetchComments('/bootstrap');
+
+  // Load the form to post comments and the list of comments.
+  getCommentsForm(json);
+  getComments(json.comments);
+  updateNextCommentsCursor(json.nextCursor);
+  openCommentStream();
+
+  // Restore the cursor after the comments section has loaded.
+  document.body.style.cursor = 'default';
+}
+
+/**
+ * Replaces the list of comments with the first page of comments for the
+ * selected options, without reloading the login status.
+ */
+async function reloadComments() {
+  // Set the cursor to the loading icon.
+  document.body.style.cursor = 'wait';
+
+  const json = await fetchComments('/data');
+  getComments(json.comments);
+  updateNextCommentsCursor(json.nextCursor);
+  openCommentStream();
+
+  // Restore the cursor after the comments have loaded.
+  document.body.style.cursor = 'default';
+}
+
+/**
+ * Adds the next page of comments to the end of the list of comments.
+ */
+async function loadMoreComments() {
+  // Set the cursor to the loading icon.
+  document.body.style.cursor = 'wait';
+
+  const json = await fetchComments('/data', nextCommentsCursor);
+  json.comments.forEach(appendComment);
+  updateNextCommentsCursor(json.nextCursor);
+
+  // Restore the cursor after the comments have loaded.
+  document.body.style.cursor = 'default';
+}
+
+/**
+ * Fetches a page of comments with the selected options from the given path,
+ * starting at the given cursor or at the first comment if there is none.
+ */
+async function fetchComments(path, cursor) {
   const maxComments = document.getElementById('max-comments').value;
   const sortOption = document.getElementById('sort-option').value;
   const languageCode = document.getElementById('language').value;
@@ -155,33 +211,81 @@ async function loadCommentsSection() {
   params.append('max-comments', maxComments);
   params.append('sort-option', sortOption);
   params.append('language-code', languageCode);
+  if (cursor) {
+    params.append('cursor', cursor);
+  }
 
-  const response = await fetch(`/data?${params.toString()}`);
-  const json = await response.json();
+  const response = await fetch(`${path}?${params.toString()}`);
+  return response.json();
+}
 
-  // Load the form to post comments and the list of comments.
-  await Promise.all([
-    getCommentsForm(json),
-    getComments(json.comments),
-  ]);
-  // Restore the cursor after the comments section has loaded.
-  document.body.style.cursor = 'default';
+/**
+ * Listens for comments posted after the comments section was loaded in the
+ * selected language, replacing any stream opened for another language.
+ */
+function openCommentStream() {
+  if (commentStream) {
+    commentStream.close();
+  }
+
+  const languageCode = document.getElementById('language').value;
+  commentStream = new EventSource(
+      `/comment-stream?language-code=${encodeURIComponent(languageCode)}`);
+  commentStream.addEventListener('comment', (event) => {
+    addPushedComment(JSON.parse(event.data));
+  });
 }
 
 /**
- * Fetches the login status from the server and either unhides the form to post
- * a comment if the user is logged in or adds a login link to the DOM if the
- * user is not logged in.
+ * Shows a comment pushed by the server where it belongs in the current sort
+ * order, if it has not been shown already.
  */
-async function getCommentsForm(json) {
-  const response = await fetch('/login-status');
-  const isLoggedIn = await response.json();
+function addPushedComment(comment) {
+  const commentsContainer = document.getElementById('comments-container');
+  if (commentsContainer.querySelector(`[data-comment-id="${comment.id}"]`)) {
+    return;
+  }
+
+  // Comments sorted by name are left to be shown the next time the comments
+  // are loaded, and a new comment only belongs on a page of the oldest
+  // comments once every older comment has been loaded.
+  const sortOption = document.getElementById('sort-option').value;
+  if (sortOption !== 'newest' &&
+      (sortOption !== 'oldest' || nextCommentsCursor)) {
+    return;
+  }
+
+  const emptyComment = document.getElementById('empty-comment');
+  if (emptyComment) {
+    emptyComment.parentElement.remove();
+  }
 
+  appendComment(comment);
+  if (sortOption === 'newest') {
+    commentsContainer.prepend(commentsContainer.lastElementChild);
+  }
+}
+
+/**
+ * Stores the cursor to the next page of comments and only shows the button to
+ * load more comments if there may be more.
+ */
+function updateNextCommentsCursor(cursor) {
+  nextCommentsCursor = cursor;
+  const loadMoreButton = document.getElementById('load-more-comments');
+  loadMoreButton.style.display = cursor ? 'block' : 'none';
+}
+
+/**
+ * Either unhides the form to post a comment if the user is logged in or adds a
+ * login link to the DOM if the user is not logged in.
+ */
+function getCommentsForm(json) {
   const loginMessageContainer =
       document.getElementById('login-message-container');
   const loginLogoutLinkElement = document.getElementById('login-logout-link');
 
-  if (isLoggedIn) {
+  if (json.loggedIn) {
     // Unhide the forms to update the display name and post comments, which are
     // hidden by default.
     const updateNameForm = document.getElementById('update-name');
@@ -218,7 +322,7 @@ async function getCommentsForm(json) {
 /**
  * Adds a list of comments to the DOM.
  */
-async function getComments(comments) {
+function getComments(comments) {
   const commentsContainer = document.getElementById('comments-container');
   commentsContainer.innerHTML = '';
 
@@ -230,33 +334,41 @@ async function getComments(comments) {
     pElement.id = 'empty-comment';
     commentsContainer.appendChild(commentElement);
   } else {
-    // Create <h4> and <p> elements for each comment's author and text.
-    comments.forEach((comment) => {
-      const commentElement = document.createElement('div');
-
-      // Put the date in the format "Tuesday, June 9, 2020, 5:35 PM".
-      const dateFormatOptions = {
-        weekday: 'long',
-        year: 'numeric',
-        month: 'long',
-        day: 'numeric',
-        hour: 'numeric',
-        minute: 'numeric',
-        hour12: true,
-      };
-      const formattedDate = new Date(comment.timestamp)
-                                .toLocaleString('en-US', dateFormatOptions);
-
-      const pElement = createTextElement(commentElement, 'p', formattedDate);
-      pElement.classList.add('comment-date');
-      createTextElement(commentElement, 'h4', comment.author);
-      createTextElement(commentElement, 'p', comment.commentText);
-
-      commentsContainer.appendChild(commentElement);
-    });
+    comments.forEach(appendComment);
   }
 }
 
+/**
+ * Adds a comment to the end of the list of comments in the DOM.
+ */
+function appendComment(comment) {
+  const commentsContainer = document.getElementById('comments-container');
+
+  // Create <h4> and <p> elements for the comment's author and text.
+  const commentElement = document.createElement('div');
+  commentElement.dataset.commentId = comment.id;
+
+  // Put the date in the format "Tuesday, June 9, 2020, 5:35 PM".
+  const dateFormatOptions = {
+    weekday: 'long',
+    year: 'numeric',
+    month: 'long',
+    day: 'numeric',
+    hour: 'numeric',
+    minute: 'numeric',
+    hour12: true,
+  };
+  const formattedDate =
+      new Date(comment.timestamp).toLocaleString('en-US', dateFormatOptions);
+
+  const pElement = createTextElement(commentElement, 'p', formattedDate);
+  pElement.classList.add('comment-date');
+  createTextElement(commentElement, 'h4', comment.author);
+  createTextElement(commentElement, 'p', comment.commentText);
+
+  commentsContainer.appendChild(commentElement);
+}
+
 /**
  * Creates an html element containing the specified text and
  * inserts it as the last child of a given parent element.
@@ -300,22 +412,53 @@ async function postComment(event) {
   document.body.style.cursor = 'wait';
 
   const commentInput = document.getElementById('comment-input');
-  await fetch(
+  const response = await fetch(
       `/data?comment=${encodeURIComponent(commentInput.value)}`,
       {method: 'POST'});
 
-  // Clear out the form input.
-  commentInput.value = '';
-  loadCommentsSection();
+  // Keep the comment in the form if the server rejected it so that it can be
+  // posted again.
+  if (response.ok) {
+    commentInput.value = '';
+  }
+  reloadComments();
 }
 
 /**
- * Deletes all comments from the server and removes them from the page.
+ * Deletes all comments from the server and removes them from the page once the
+ * server has finished deleting them in the background.
  */
 async function deleteAllComments() {
   // Set the cursor to the loading icon.
   document.body.style.cursor = 'wait';
 
-  await fetch('/delete-data', {method: 'POST'});
-  loadCommentsSection();
+  const response = await fetch('/delete-data', {method: 'POST'});
+  if (response.ok) {
+    const job = await response.json();
+    await waitForDeletionJob(job.jobId);
+  }
+  reloadComments();
+}
+
+/**
+ * Polls the progress of a comment deletion job until it is done, the server
+ * cannot report on it, or two minutes have passed.
+ */
+async function waitForDeletionJob(jobId) {
+  const pollIntervalMs = 500;
+  const maxAttempts = 240;
+
+  for (let attempt = 0; attempt < maxAttempts; attempt++) {
+    const response = await fetch(`/delete-data?job-id=${jobId}`);
+    if (!response.ok) {
+      return;
+    }
+
+    const job = await response.json();
+    if (job.done) {
+      return;
+    }
+
+    await new Promise((resolve) => setTimeout(resolve, pollIntervalMs));
+  }
 }
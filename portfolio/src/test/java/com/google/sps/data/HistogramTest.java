@@ -0,0 +1,80 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class HistogramTest {
+  // The most that a reported percentile can exceed the true value by.
+  private static final double MAX_RELATIVE_ERROR = 0.125;
+
+  @Test
+  public void emptyHistogram() {
+    Histogram.Snapshot snapshot = new Histogram().snapshot();
+
+    Assert.assertEquals(0, snapshot.getCount());
+    Assert.assertEquals(0, snapshot.getPercentile99());
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    Histogram histogram = new Histogram();
+    for (int value = 0; value < 8; value++) {
+      histogram.record(value);
+    }
+
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    Assert.assertEquals(8, snapshot.getCount());
+    Assert.assertEquals(3, snapshot.getPercentile50());
+    Assert.assertEquals(7, snapshot.getMax());
+  }
+
+  @Test
+  public void percentilesAreWithinTheRelativeError() {
+    Histogram histogram = new Histogram();
+    for (int value = 1; value <= 100_000; value++) {
+      histogram.record(value);
+    }
+
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    Assert.assertEquals(100_000, snapshot.getCount());
+    Assert.assertEquals(50_000.5, snapshot.getMean(), 0.001);
+    assertWithinRelativeError(50_000, snapshot.getPercentile50());
+    assertWithinRelativeError(90_000, snapshot.getPercentile90());
+    assertWithinRelativeError(99_000, snapshot.getPercentile99());
+    Assert.assertEquals(100_000, snapshot.getMax());
+  }
+
+  @Test
+  public void largeAndNegativeValues() {
+    Histogram histogram = new Histogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    Assert.assertEquals(2, snapshot.getCount());
+    Assert.assertEquals(0, snapshot.getPercentile50());
+    Assert.assertEquals(Long.MAX_VALUE, snapshot.getPercentile99());
+  }
+
+  private static void assertWithinRelativeError(long expected, long actual) {
+    Assert.assertTrue("Expected about " + expected + " but was " + actual,
+        actual >= expected && actual <= expected * (1 + MAX_RELATIVE_ERROR));
+  }
+}
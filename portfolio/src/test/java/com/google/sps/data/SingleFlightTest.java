@@ -0,0 +1,122 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SingleFlightTest {
+  private static final int CALLERS = 8;
+
+  private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+  private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  @Test
+  public void concurrentCallersShareOneLoad() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Future<Integer>> results = new ArrayList<>();
+    results.add(executor.submit(() -> singleFlight.get("key", () -> {
+      loading.countDown();
+      awaitUninterruptibly(release);
+      return loads.incrementAndGet();
+    })));
+
+    // The other callers start once the first load is running, and it only finishes once they have
+    // all joined it.
+    loading.await();
+    for (int i = 1; i < CALLERS; i++) {
+      results.add(executor.submit(() -> singleFlight.get("key", loads::incrementAndGet)));
+    }
+    awaitWaiters("key", CALLERS - 1);
+    release.countDown();
+
+    for (Future<Integer> result : results) {
+      Assert.assertEquals(1, (int) result.get(1, TimeUnit.MINUTES));
+    }
+    Assert.assertEquals(1, loads.get());
+    Assert.assertEquals(0, singleFlight.inFlightCount());
+  }
+
+  @Test
+  public void finishedLoadsAreNotReused() {
+    AtomicInteger loads = new AtomicInteger();
+
+    Assert.assertEquals(1, (int) singleFlight.get("key", loads::incrementAndGet));
+    Assert.assertEquals(2, (int) singleFlight.get("key", loads::incrementAndGet));
+  }
+
+  @Test
+  public void failuresAreSharedAndNotKept() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<Integer> first = executor.submit(() -> singleFlight.get("key", () -> {
+      loading.countDown();
+      awaitUninterruptibly(release);
+      throw new IllegalStateException("load failed");
+    }));
+    loading.await();
+    Future<Integer> second = executor.submit(() -> singleFlight.get("key", () -> 2));
+    awaitWaiters("key", 1);
+    release.countDown();
+
+    assertFailsWithIllegalState(first);
+    assertFailsWithIllegalState(second);
+    Assert.assertEquals(3, (int) singleFlight.get("key", () -> 3));
+  }
+
+  private static void assertFailsWithIllegalState(Future<Integer> result) throws Exception {
+    try {
+      result.get(1, TimeUnit.MINUTES);
+      Assert.fail("Expected the load to fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  private void awaitWaiters(String key, int count) {
+    while (singleFlight.waiterCount(key) < count) {
+      Thread.yield();
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Query;
+import com.google.common.collect.ImmutableMap;
+import com.google.sps.data.UserInfoStore;
+import java.io.StringWriter;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BackfillAuthorSortKeysServletTest {
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private BackfillAuthorSortKeysServlet backfillServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    backfillServlet = testEnvironment.initServlet(new BackfillAuthorSortKeysServlet());
+  }
+
+  @After
+  public void tearDown() {
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void backfillOnlyRunsOnce() throws Exception {
+    // A comment stored before comments had an author sort key.
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity comment = new Entity("Comment");
+    comment.setProperty("author", "Old Author");
+    comment.setProperty("commentText", "An old comment");
+    comment.setProperty("timestamp", 0L);
+    datastore.put(comment);
+
+    HttpServletResponse response = createResponse(new StringWriter());
+    backfillServlet.doPost(createRequest(ImmutableMap.of()), response);
+    verify(response).setStatus(HttpServletResponse.SC_ACCEPTED);
+    testEnvironment.runQueuedTasks();
+    Assert.assertEquals(UserInfoStore.createSortKey("Old Author"),
+        datastore.prepare(new Query("Comment")).asSingleEntity().getProperty("authorSortKey"));
+
+    response = createResponse(new StringWriter());
+    backfillServlet.doPost(createRequest(ImmutableMap.of()), response);
+    verify(response).sendError(eq(HttpServletResponse.SC_CONFLICT), anyString());
+  }
+}
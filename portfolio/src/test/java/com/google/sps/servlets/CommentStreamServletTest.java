@@ -0,0 +1,69 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.LANGUAGE_CODE;
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.common.collect.ImmutableMap;
+import java.io.StringWriter;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CommentStreamServletTest {
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private DataServlet dataServlet;
+  private CommentStreamServlet commentStreamServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    dataServlet = testEnvironment.initServlet(new DataServlet());
+    commentStreamServlet = testEnvironment.initServlet(new CommentStreamServlet());
+
+    // Complete the response after the first comments, as in production.
+    SystemProperty.environment.set(SystemProperty.Environment.Value.Production);
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(SystemProperty.environment.key());
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void reconnectingClientsGetTheCommentsTheyMissed() throws Exception {
+    dataServlet.doPost(createRequest(ImmutableMap.of("comment", "Missed comment")),
+        createResponse(new StringWriter()));
+    testEnvironment.runQueuedTasks();
+
+    HttpServletRequest request = createRequest(ImmutableMap.of("language-code", LANGUAGE_CODE));
+    when(request.getHeader("Last-Event-ID")).thenReturn("0");
+    StringWriter output = new StringWriter();
+    commentStreamServlet.doGet(request, createResponse(output));
+
+    Assert.assertTrue(output.toString().contains("event: comment\n"));
+    Assert.assertTrue(output.toString().contains("Missed comment"));
+  }
+}
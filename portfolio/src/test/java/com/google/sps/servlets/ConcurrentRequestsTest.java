@@ -0,0 +1,186 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.LANGUAGE_CODE;
+import static com.google.sps.servlets.ServletTestEnvironment.USER_ID;
+import static com.google.sps.servlets.ServletTestEnvironment.USER_NAME;
+import static com.google.sps.servlets.ServletTestEnvironment.countComments;
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+import static org.mockito.Mockito.when;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Sends many requests to the servlets in parallel against the local Datastore stub to check that
+ * they are safe to run with threadsafe set to true.
+ */
+@RunWith(JUnit4.class)
+public final class ConcurrentRequestsTest {
+  private static final int THREADS = 16;
+  private static final int REQUESTS_PER_THREAD = 20;
+
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private ApiProxy.Environment environment;
+  private ExecutorService executor;
+  private ServiceRegistry services;
+  private DataServlet dataServlet;
+  private NameServlet nameServlet;
+  private DeleteDataServlet deleteDataServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    environment = ApiProxy.getCurrentEnvironment();
+    executor = Executors.newFixedThreadPool(THREADS);
+    services = testEnvironment.getServices();
+
+    dataServlet = testEnvironment.initServlet(new DataServlet());
+    nameServlet = testEnvironment.initServlet(new NameServlet());
+    deleteDataServlet = testEnvironment.initServlet(new DeleteDataServlet());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void concurrentPostsAreAllStored() throws Exception {
+    runConcurrently(thread -> {
+      for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+        dataServlet.doPost(
+            createRequest(ImmutableMap.of("comment", "Comment " + thread + "-" + i)),
+            createResponse(new StringWriter()));
+      }
+    });
+
+    Assert.assertEquals(THREADS * REQUESTS_PER_THREAD, countComments());
+  }
+
+  @Test
+  public void concurrentReadsAndWritesReturnValidPages() throws Exception {
+    runConcurrently(thread -> {
+      for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+        if (thread % 2 == 0) {
+          dataServlet.doPost(
+              createRequest(ImmutableMap.of("comment", "Comment " + thread + "-" + i)),
+              createResponse(new StringWriter()));
+        } else {
+          HttpServletRequest request = createRequest(ImmutableMap.of(
+              "max-comments", "10", "sort-option", "newest", "language-code", LANGUAGE_CODE));
+          when(request.getServletPath()).thenReturn("/bootstrap");
+          StringWriter output = new StringWriter();
+          dataServlet.doGet(request, createResponse(output));
+
+          JsonObject json = JsonParser.parseString(output.toString()).getAsJsonObject();
+          Assert.assertEquals(USER_NAME, json.get("name").getAsString());
+          Assert.assertTrue(json.getAsJsonArray("comments").size() <= 10);
+        }
+      }
+    });
+
+    Assert.assertEquals(THREADS / 2 * REQUESTS_PER_THREAD, countComments());
+  }
+
+  @Test
+  public void concurrentRenamesLeaveOneOfTheNames() throws Exception {
+    runConcurrently(thread -> {
+      for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+        nameServlet.doPost(createRequest(ImmutableMap.of("new-name", "Name " + thread)),
+            createResponse(new StringWriter()));
+      }
+    });
+
+    String name = services.getUserInfoStore().getName(USER_ID).get();
+    Assert.assertTrue(name.matches("Name \\d+"));
+  }
+
+  @Test
+  public void concurrentDeletesAndWritesSucceed() throws Exception {
+    runConcurrently(thread -> {
+      for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+        dataServlet.doPost(
+            createRequest(ImmutableMap.of("comment", "Comment " + thread + "-" + i)),
+            createResponse(new StringWriter()));
+        deleteDataServlet.doPost(
+            createRequest(ImmutableMap.of()), createResponse(new StringWriter()));
+      }
+    });
+
+    // Comments posted after another thread's last delete may remain, so delete once more.
+    deleteDataServlet.doPost(createRequest(ImmutableMap.of()), createResponse(new StringWriter()));
+    testEnvironment.runQueuedTasks();
+    Assert.assertEquals(0, countComments());
+  }
+
+  /**
+   * A unit of work run by each thread, identified by the thread's index.
+   */
+  private interface ThreadTask {
+    void run(int thread) throws Exception;
+  }
+
+  /**
+   * Runs the task on every thread at the same time and rethrows the first failure.
+   */
+  private void runConcurrently(ThreadTask task) throws Exception {
+    CountDownLatch startSignal = new CountDownLatch(1);
+    List<Future<Void>> results = new ArrayList<>();
+
+    for (int thread = 0; thread < THREADS; thread++) {
+      int threadIndex = thread;
+      Callable<Void> callable = () -> {
+        // The local App Engine services are bound to the thread that set them up.
+        ApiProxy.setEnvironmentForCurrentThread(environment);
+        try {
+          startSignal.await();
+          task.run(threadIndex);
+          return null;
+        } finally {
+          ApiProxy.clearEnvironmentForCurrentThread();
+        }
+      };
+      results.add(executor.submit(callable));
+    }
+
+    startSignal.countDown();
+    for (Future<Void> result : results) {
+      result.get(1, TimeUnit.MINUTES);
+    }
+  }
+}
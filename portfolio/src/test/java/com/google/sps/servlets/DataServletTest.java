@@ -0,0 +1,149 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.LANGUAGE_CODE;
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnit4.class)
+public final class DataServletTest {
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private DataServlet dataServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    dataServlet = testEnvironment.initServlet(new DataServlet());
+  }
+
+  @After
+  public void tearDown() {
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void pagesFromRecentCommentsContinueInDatastore() throws Exception {
+    int commentCount = 30;
+    for (int i = 0; i < commentCount; i++) {
+      dataServlet.doPost(createRequest(ImmutableMap.of("comment", "Comment " + i)),
+          createResponse(new StringWriter()));
+    }
+
+    // Page through every comment, starting with a page served from memory.
+    List<Long> pagedIds = new ArrayList<>();
+    Map<String, String> parameters = new HashMap<>(ImmutableMap.of(
+        "max-comments", "10", "sort-option", "newest", "language-code", LANGUAGE_CODE));
+    while (true) {
+      StringWriter output = new StringWriter();
+      dataServlet.doGet(createRequest(parameters), createResponse(output));
+      JsonObject json = JsonParser.parseString(output.toString()).getAsJsonObject();
+      for (JsonElement comment : json.getAsJsonArray("comments")) {
+        pagedIds.add(comment.getAsJsonObject().get("id").getAsLong());
+      }
+
+      if (!json.has("nextCursor")) {
+        break;
+      }
+      parameters.put("cursor", json.get("nextCursor").getAsString());
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Long> storedIds = new ArrayList<>();
+    for (Entity entity :
+        datastore.prepare(new Query("Comment").addSort("timestamp", SortDirection.DESCENDING))
+            .asIterable()) {
+      storedIds.add(entity.getKey().getId());
+    }
+    Assert.assertEquals(storedIds, pagedIds);
+  }
+
+  @Test
+  public void unchangedCommentsAreNotSentAgain() throws Exception {
+    dataServlet.doPost(createRequest(ImmutableMap.of("comment", "First comment")),
+        createResponse(new StringWriter()));
+    testEnvironment.runQueuedTasks();
+
+    Map<String, String> parameters = ImmutableMap.of(
+        "max-comments", "10", "sort-option", "newest", "language-code", LANGUAGE_CODE);
+    HttpServletResponse response = createResponse(new StringWriter());
+    dataServlet.doGet(createRequest(parameters), response);
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq("ETag"), eTag.capture());
+
+    // Polling with the same tag is answered without sending the comments.
+    HttpServletRequest request = createRequest(parameters);
+    when(request.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+    StringWriter output = new StringWriter();
+    response = createResponse(output);
+    dataServlet.doGet(request, response);
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    Assert.assertEquals("", output.toString());
+
+    // A new comment changes the tag.
+    dataServlet.doPost(createRequest(ImmutableMap.of("comment", "Second comment")),
+        createResponse(new StringWriter()));
+    testEnvironment.runQueuedTasks();
+    output = new StringWriter();
+    response = createResponse(output);
+    dataServlet.doGet(request, response);
+    verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    JsonObject json = JsonParser.parseString(output.toString()).getAsJsonObject();
+    Assert.assertEquals(2, json.getAsJsonArray("comments").size());
+  }
+
+  @Test
+  public void pagesWithUntranslatedCommentsAreNotTagged() throws Exception {
+    dataServlet.doPost(createRequest(ImmutableMap.of("comment", "First comment")),
+        createResponse(new StringWriter()));
+
+    // The mocked translation API returns no translations, so the comment is sent untranslated.
+    HttpServletResponse response = createResponse(new StringWriter());
+    dataServlet.doGet(createRequest(ImmutableMap.of(
+                          "max-comments", "10", "sort-option", "newest", "language-code", "fr")),
+        response);
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+    verify(response).setHeader("Cache-Control", "no-store");
+  }
+}
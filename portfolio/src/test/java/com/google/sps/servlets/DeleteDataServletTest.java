@@ -0,0 +1,71 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.countComments;
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DeleteDataServletTest {
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private DataServlet dataServlet;
+  private DeleteDataServlet deleteDataServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    dataServlet = testEnvironment.initServlet(new DataServlet());
+    deleteDataServlet = testEnvironment.initServlet(new DeleteDataServlet());
+  }
+
+  @After
+  public void tearDown() {
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void deletionJobDeletesInBatchesAndReportsProgress() throws Exception {
+    int commentCount = 1200;
+    for (int i = 0; i < commentCount; i++) {
+      dataServlet.doPost(createRequest(ImmutableMap.of("comment", "Comment " + i)),
+          createResponse(new StringWriter()));
+    }
+
+    StringWriter output = new StringWriter();
+    deleteDataServlet.doPost(createRequest(ImmutableMap.of()), createResponse(output));
+    String jobId =
+        JsonParser.parseString(output.toString()).getAsJsonObject().get("jobId").getAsString();
+    testEnvironment.runQueuedTasks();
+
+    output = new StringWriter();
+    deleteDataServlet.doGet(createRequest(ImmutableMap.of("job-id", jobId)), createResponse(output));
+    JsonObject job = JsonParser.parseString(output.toString()).getAsJsonObject();
+    Assert.assertTrue(job.get("done").getAsBoolean());
+    Assert.assertEquals(commentCount, job.get("deletedCount").getAsInt());
+    Assert.assertEquals(0, countComments());
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.taskqueue.dev.LocalTaskQueue;
+import com.google.appengine.api.taskqueue.dev.QueueStateInfo.TaskStateInfo;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.cloud.translate.Detection;
+import com.google.cloud.translate.Translate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Runs servlets for tests against the local App Engine services, with a logged-in administrator
+ * who has a name and comments that are detected to be in the language they are read in. Requests
+ * and responses are mocks, and queued tasks, which include detecting the language of new comments,
+ * are only run when a test asks for them.
+ */
+final class ServletTestEnvironment {
+  static final String USER_ID = "123";
+  static final String USER_NAME = "Test User";
+  static final String LANGUAGE_CODE = "en";
+
+  private static final String QUEUE_NAME = "default";
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(
+          new LocalDatastoreServiceTestConfig().setApplyAllHighRepJobPolicy(),
+          new LocalMemcacheServiceTestConfig(),
+          new LocalUserServiceTestConfig(),
+          new LocalTaskQueueTestConfig().setDisableAutoTaskExecution(true))
+          .setEnvIsLoggedIn(true)
+          .setEnvIsAdmin(true)
+          .setEnvEmail("test@example.com")
+          .setEnvAuthDomain("example.com")
+          .setEnvAttributes(ImmutableMap.<String, Object>of(
+              "com.google.appengine.api.users.UserService.user_id_key", USER_ID));
+
+  private ServiceRegistry services;
+  private Map<String, HttpServlet> taskServlets;
+
+  void setUp() throws Exception {
+    helper.setUp();
+
+    // Comments are detected to be in the language they are read in, so no translation is needed.
+    Detection detection = mock(Detection.class);
+    when(detection.getLanguage()).thenReturn(LANGUAGE_CODE);
+    Translate translate = mock(Translate.class);
+    when(translate.detect(anyString())).thenReturn(detection);
+
+    services = new ServiceRegistry(DatastoreServiceFactory.getDatastoreService(),
+        () -> translate, UserServiceFactory.getUserService());
+    services.getUserInfoStore().putName(USER_ID, USER_NAME);
+
+    taskServlets = ImmutableMap.of(
+        "/tasks/delete-comments", initServlet(new DeleteCommentsServlet()),
+        "/tasks/update-comment-authors", initServlet(new UpdateCommentAuthorsServlet()),
+        "/tasks/translate-comment", initServlet(new TranslateCommentServlet()));
+  }
+
+  void tearDown() {
+    helper.tearDown();
+  }
+
+  ServiceRegistry getServices() {
+    return services;
+  }
+
+  /**
+   * Initializes a servlet with a context that holds the service registry.
+   */
+  <T extends HttpServlet> T initServlet(T servlet) throws Exception {
+    ServletContext context = mock(ServletContext.class);
+    when(context.getAttribute(anyString())).thenReturn(services);
+    ServletConfig config = mock(ServletConfig.class);
+    when(config.getServletContext()).thenReturn(context);
+
+    servlet.init(config);
+    return servlet;
+  }
+
+  /**
+   * Runs the tasks in the queue, including the tasks that they add, until it is empty. Tasks
+   * scheduled for later are run right away.
+   */
+  void runQueuedTasks() throws Exception {
+    LocalTaskQueue taskQueue = LocalTaskQueueTestConfig.getLocalTaskQueue();
+    List<TaskStateInfo> tasks;
+    while (!(tasks = taskQueue.getQueueStateInfo().get(QUEUE_NAME).getTaskInfo()).isEmpty()) {
+      for (TaskStateInfo task : tasks) {
+        taskQueue.deleteTask(QUEUE_NAME, task.getTaskName());
+
+        HttpServletRequest request = createRequest(parseFormParameters(task.getBody()));
+        when(request.getHeader("X-AppEngine-QueueName")).thenReturn(QUEUE_NAME);
+        when(request.getMethod()).thenReturn("POST");
+        taskServlets.get(task.getUrl()).service(request, createResponse(new StringWriter()));
+      }
+    }
+  }
+
+  static HttpServletRequest createRequest(Map<String, String> parameters) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter(anyString()))
+        .thenAnswer(invocation -> parameters.get(invocation.getArgument(0)));
+    when(request.getSession()).thenReturn(mock(HttpSession.class));
+    return request;
+  }
+
+  static HttpServletResponse createResponse(StringWriter output) throws Exception {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getWriter()).thenReturn(new PrintWriter(output));
+    return response;
+  }
+
+  static int countComments() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    return datastore.prepare(new Query("Comment").setKeysOnly())
+        .countEntities(FetchOptions.Builder.withDefaults());
+  }
+
+  private static Map<String, String> parseFormParameters(String body) throws Exception {
+    Map<String, String> parameters = new HashMap<>();
+    for (Map.Entry<String, String> parameter :
+        Splitter.on('&').omitEmptyStrings().withKeyValueSeparator('=').split(body).entrySet()) {
+      parameters.put(parameter.getKey(), URLDecoder.decode(parameter.getValue(), "UTF-8"));
+    }
+    return parameters;
+  }
+}
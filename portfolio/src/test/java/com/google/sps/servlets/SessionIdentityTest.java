@@ -0,0 +1,102 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.LANGUAGE_CODE;
+import static com.google.sps.servlets.ServletTestEnvironment.USER_ID;
+import static com.google.sps.servlets.ServletTestEnvironment.USER_NAME;
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SessionIdentityTest {
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private ServiceRegistry services;
+  private DataServlet dataServlet;
+  private NameServlet nameServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    services = testEnvironment.getServices();
+    dataServlet = testEnvironment.initServlet(new DataServlet());
+    nameServlet = testEnvironment.initServlet(new NameServlet());
+  }
+
+  @After
+  public void tearDown() {
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void bootstrapLoginInformationIsKeptInTheSessionUntilRenamed() throws Exception {
+    Map<String, Object> attributes = new HashMap<>();
+    HttpSession session = mock(HttpSession.class);
+    when(session.getAttribute(anyString()))
+        .thenAnswer(invocation -> attributes.get(invocation.getArgument(0)));
+    doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+        .when(session).setAttribute(anyString(), any());
+    doAnswer(invocation -> attributes.remove(invocation.getArgument(0)))
+        .when(session).removeAttribute(anyString());
+
+    Assert.assertEquals(USER_NAME, bootstrap(session).get("name").getAsString());
+
+    // A name stored without going through the name servlet is not seen by the session.
+    services.getUserInfoStore().putName(USER_ID, "other name");
+    Assert.assertEquals(USER_NAME, bootstrap(session).get("name").getAsString());
+
+    HttpServletRequest request = createRequest(ImmutableMap.of("new-name", "renamed user"));
+    when(request.getSession(false)).thenReturn(session);
+    nameServlet.doPost(request, createResponse(new StringWriter()));
+    Assert.assertEquals("renamed user", bootstrap(session).get("name").getAsString());
+
+    // Follow-up pages are sent without the login information.
+    StringWriter output = new StringWriter();
+    dataServlet.doGet(createRequest(ImmutableMap.of("max-comments", "10", "sort-option", "newest",
+                          "language-code", LANGUAGE_CODE)),
+        createResponse(output));
+    Assert.assertFalse(JsonParser.parseString(output.toString()).getAsJsonObject().has("name"));
+  }
+
+  private JsonObject bootstrap(HttpSession session) throws Exception {
+    HttpServletRequest request = createRequest(ImmutableMap.of(
+        "max-comments", "10", "sort-option", "newest", "language-code", LANGUAGE_CODE));
+    when(request.getServletPath()).thenReturn("/bootstrap");
+    when(request.getSession()).thenReturn(session);
+    StringWriter output = new StringWriter();
+    dataServlet.doGet(request, createResponse(output));
+    return JsonParser.parseString(output.toString()).getAsJsonObject();
+  }
+}
@@ -0,0 +1,64 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.LANGUAGE_CODE;
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Query;
+import com.google.common.collect.ImmutableMap;
+import java.io.StringWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class TranslateCommentServletTest {
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private DataServlet dataServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    dataServlet = testEnvironment.initServlet(new DataServlet());
+  }
+
+  @After
+  public void tearDown() {
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void commentLanguageIsDetectedAfterTheCommentIsStored() throws Exception {
+    dataServlet.doPost(createRequest(ImmutableMap.of("comment", "A comment")),
+        createResponse(new StringWriter()));
+    Assert.assertNull(getStoredComment().getProperty("languageCode"));
+
+    testEnvironment.runQueuedTasks();
+    Assert.assertEquals(LANGUAGE_CODE, getStoredComment().getProperty("languageCode"));
+  }
+
+  private static Entity getStoredComment() {
+    return DatastoreServiceFactory.getDatastoreService()
+        .prepare(new Query("Comment"))
+        .asSingleEntity();
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.sps.servlets.ServletTestEnvironment.LANGUAGE_CODE;
+import static com.google.sps.servlets.ServletTestEnvironment.createRequest;
+import static com.google.sps.servlets.ServletTestEnvironment.createResponse;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class UpdateCommentAuthorsServletTest {
+  private final ServletTestEnvironment testEnvironment = new ServletTestEnvironment();
+  private DataServlet dataServlet;
+  private NameServlet nameServlet;
+
+  @Before
+  public void setUp() throws Exception {
+    testEnvironment.setUp();
+    dataServlet = testEnvironment.initServlet(new DataServlet());
+    nameServlet = testEnvironment.initServlet(new NameServlet());
+  }
+
+  @After
+  public void tearDown() {
+    testEnvironment.tearDown();
+  }
+
+  @Test
+  public void renamedAuthorsAreSortedByTheirNewName() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      dataServlet.doPost(createRequest(ImmutableMap.of("comment", "Comment " + i)),
+          createResponse(new StringWriter()));
+    }
+
+    nameServlet.doPost(createRequest(ImmutableMap.of("new-name", "renamed user")),
+        createResponse(new StringWriter()));
+    testEnvironment.runQueuedTasks();
+
+    StringWriter output = new StringWriter();
+    dataServlet.doGet(createRequest(ImmutableMap.of("max-comments", "10", "sort-option", "name",
+                          "language-code", LANGUAGE_CODE)),
+        createResponse(output));
+    JsonObject json = JsonParser.parseString(output.toString()).getAsJsonObject();
+    Assert.assertEquals(3, json.getAsJsonArray("comments").size());
+    for (JsonElement comment : json.getAsJsonArray("comments")) {
+      Assert.assertEquals("renamed user", comment.getAsJsonObject().get("author").getAsString());
+    }
+  }
+}
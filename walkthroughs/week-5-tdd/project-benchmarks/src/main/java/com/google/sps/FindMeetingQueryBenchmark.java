@@ -0,0 +1,116 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks finding the times for a meeting in a day of randomly scheduled events. Running it
+ * with {@code -prof gc} shows how many bytes each query allocates as gc.alloc.rate.norm, which for
+ * the queries that reuse an index should only be the times they return and the iterators over the
+ * request's attendees.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindMeetingQueryBenchmark {
+  private static final int MEETING_DURATION = 30;
+  private static final int ATTENDEES = 3;
+  private static final int OPTIONAL_ATTENDEES = 3;
+
+  @Param({"10", "100"})
+  public int people;
+
+  @Param({"4", "16"})
+  public int eventsPerPerson;
+
+  private List<Event> events;
+  private MeetingRequest request;
+  private AttendeeCalendarIndex calendar;
+  private FindMeetingQuery findMeetingQuery;
+  private DayBitmapQuery dayBitmapQuery;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    String[] names = new String[people];
+    for (int i = 0; i < people; i++) {
+      names[i] = "Person " + i;
+    }
+
+    // Each event has one to three attendees and lasts up to two hours.
+    events = new ArrayList<>();
+    for (int i = 0; i < people * eventsPerPerson / 2; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 15);
+      int duration =
+          15 + random.nextInt(Math.min(105, TimeRange.WHOLE_DAY.end() - start - 15) + 1);
+      Set<String> attendees = new HashSet<>();
+      for (int j = random.nextInt(3); j >= 0; j--) {
+        attendees.add(names[random.nextInt(people)]);
+      }
+      events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, duration), attendees));
+    }
+
+    request = new MeetingRequest(Arrays.asList(names).subList(0, ATTENDEES),
+        Arrays.asList(names).subList(ATTENDEES, ATTENDEES + OPTIONAL_ATTENDEES), MEETING_DURATION);
+    calendar = AttendeeCalendarIndex.of(events);
+    findMeetingQuery = new FindMeetingQuery();
+    dayBitmapQuery = new DayBitmapQuery(calendar);
+  }
+
+  /**
+   * Finds the times from the events, building the index of when each person is busy every time.
+   */
+  @Benchmark
+  public Collection<TimeRange> findMeetingQueryFromEvents() {
+    return new FindMeetingQuery().query(events, request);
+  }
+
+  /**
+   * Finds the times from an index built once with a query that is reused, so that only the query
+   * itself is measured.
+   */
+  @Benchmark
+  public Collection<TimeRange> findMeetingQuery() {
+    return findMeetingQuery.query(calendar, request);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> dayBitmapQuery() {
+    return dayBitmapQuery.query(request);
+  }
+}
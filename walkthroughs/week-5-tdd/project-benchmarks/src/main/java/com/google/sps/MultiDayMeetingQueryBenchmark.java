@@ -0,0 +1,117 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks searching four weeks for a meeting between people who work 9 to 5 on weekdays in New
+ * York, Chicago, or London, with events spread over eight weeks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiDayMeetingQueryBenchmark {
+  private static final int MEETING_DURATION = 30;
+  private static final int WEEKS_OF_EVENTS = 8;
+  private static final ZoneId[] ZONES = {
+      ZoneId.of("America/New_York"), ZoneId.of("America/Chicago"), ZoneId.of("Europe/London")};
+  private static final long FIRST_MINUTE =
+      EpochMinuteRange.toEpochMinute(Instant.parse("2020-01-06T00:00:00Z"));
+  private static final int MINUTES_PER_WEEK = 7 * 24 * 60;
+
+  @Param({"10", "50"})
+  public int people;
+
+  @Param({"3", "20"})
+  public int eventsPerWeek;
+
+  private MultiDayMeetingQuery query;
+  private EpochMinuteRange horizon;
+  private MeetingRequest everyoneRequest;
+  private MeetingRequest optionalAttendeesRequest;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    String[] names = new String[people];
+    Map<String, WorkingHours> workingHours = new HashMap<>();
+    for (int i = 0; i < people; i++) {
+      names[i] = "Person " + i;
+      workingHours.put(names[i],
+          WorkingHours.weekdays(ZONES[i % ZONES.length], LocalTime.of(9, 0), LocalTime.of(17, 0)));
+    }
+
+    // Each event has one to three attendees and lasts up to two hours.
+    List<CalendarEvent> events = new ArrayList<>();
+    for (int i = 0; i < people * eventsPerWeek * WEEKS_OF_EVENTS / 2; i++) {
+      long start = FIRST_MINUTE + random.nextInt(WEEKS_OF_EVENTS * MINUTES_PER_WEEK);
+      long end = start + 15 + random.nextInt(106);
+      Set<String> attendees = new HashSet<>();
+      for (int j = random.nextInt(3); j >= 0; j--) {
+        attendees.add(names[random.nextInt(people)]);
+      }
+      events.add(new CalendarEvent(
+          "Event " + i, EpochMinuteRange.fromStartEnd(start, end), attendees));
+    }
+
+    query = new MultiDayMeetingQuery(events, workingHours);
+    horizon = EpochMinuteRange.fromStartEnd(
+        FIRST_MINUTE + 2 * MINUTES_PER_WEEK, FIRST_MINUTE + 6 * MINUTES_PER_WEEK);
+    everyoneRequest = new MeetingRequest(Arrays.asList(names), MEETING_DURATION);
+    optionalAttendeesRequest = new MeetingRequest(Arrays.asList(names).subList(0, 5),
+        Arrays.asList(names).subList(5, people), MEETING_DURATION);
+  }
+
+  @Benchmark
+  public List<EpochMinuteRange> everyoneMandatory() {
+    return query.query(everyoneRequest, horizon);
+  }
+
+  /**
+   * Has five mandatory attendees and everyone else optional, which usually falls back to the
+   * mandatory attendees only.
+   */
+  @Benchmark
+  public List<EpochMinuteRange> mostlyOptional() {
+    return query.query(optionalAttendeesRequest, horizon);
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of when each person is busy, built once from a collection of events so that a query
+ * only has to look at the people it asks about. Each person's busy times are sorted by start time,
+ * and the times that overlap are combined into one.
+ */
+public final class AttendeeCalendarIndex {
+  private final ImmutableList<Event> events;
+  private final ImmutableMap<String, ImmutableList<TimeRange>> busyTimes;
+
+  private AttendeeCalendarIndex(
+      ImmutableList<Event> events, ImmutableMap<String, ImmutableList<TimeRange>> busyTimes) {
+    this.events = events;
+    this.busyTimes = busyTimes;
+  }
+
+  /**
+   * Creates an index of the times when the attendees of the given events are busy.
+   */
+  public static AttendeeCalendarIndex of(Collection<Event> events) {
+    Map<String, List<TimeRange>> eventTimes = new HashMap<>();
+    for (Event event : events) {
+      for (String attendee : event.getAttendees()) {
+        eventTimes.computeIfAbsent(attendee, key -> new ArrayList<>()).add(event.getWhen());
+      }
+    }
+
+    ImmutableMap.Builder<String, ImmutableList<TimeRange>> busyTimes = ImmutableMap.builder();
+    for (Map.Entry<String, List<TimeRange>> entry : eventTimes.entrySet()) {
+      List<TimeRange> times = entry.getValue();
+      times.sort(TimeRange.ORDER_BY_START);
+      busyTimes.put(entry.getKey(), combineOverlappingTimes(times));
+    }
+
+    return new AttendeeCalendarIndex(ImmutableList.copyOf(events), busyTimes.build());
+  }
+
+  /**
+   * Returns the events that the index was built from.
+   */
+  public ImmutableList<Event> getEvents() {
+    return events;
+  }
+
+  /**
+   * Returns the people who attend at least one of the events.
+   */
+  public ImmutableSet<String> getPeople() {
+    return busyTimes.keySet();
+  }
+
+  /**
+   * Returns the times when the person is busy, sorted by start time. None of the times overlap.
+   */
+  public ImmutableList<TimeRange> getBusyTimes(String person) {
+    return busyTimes.getOrDefault(person, ImmutableList.of());
+  }
+
+  /**
+   * Combines each run of overlapping times in a list sorted by start time into a single time
+   * range. Times that only touch are kept apart, as are times with no duration that no other time
+   * contains, so that a query finds the same free times as it would from the events themselves.
+   */
+  private static ImmutableList<TimeRange> combineOverlappingTimes(List<TimeRange> times) {
+    ImmutableList.Builder<TimeRange> combinedTimes = ImmutableList.builder();
+    int index = 0;
+    while (index < times.size()) {
+      TimeRange latestTime = times.get(index);
+      int start = latestTime.start();
+      int end = latestTime.end();
+
+      // Compare each following time to the one that ends latest, so that a time containing two
+      // separate times is combined with both of them.
+      while (index < times.size() - 1 && latestTime.overlaps(times.get(index + 1))) {
+        index++;
+        TimeRange nextTime = times.get(index);
+        if (nextTime.end() > end) {
+          latestTime = nextTime;
+          end = nextTime.end();
+        }
+      }
+
+      combinedTimes.add(TimeRange.fromStartEnd(start, end, false));
+      index++;
+    }
+
+    return combinedTimes.build();
+  }
+}
@@ -0,0 +1,227 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Finds the same meeting times as {@link FindMeetingQuery}, but keeps each person's day as a
+ * bitmap with one bit per minute that is set if they are busy. The bitmaps of the attendees are
+ * ORed together and the free times are the runs of clear bits, so a query allocates nothing except
+ * the times it returns.
+ *
+ * <p>A query reuses the same buffer as the previous one, so an instance must not be shared between
+ * threads.
+ */
+public final class DayBitmapQuery {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+  private static final int WORDS = (MINUTES_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+  // The bits after the end of the day are always set, so that every run of free minutes ends there.
+  private static final long AFTER_END_OF_DAY =
+      MINUTES_PER_DAY % Long.SIZE == 0 ? 0 : -1L << MINUTES_PER_DAY;
+
+  private final AttendeeCalendarIndex calendar;
+  private final ImmutableMap<String, long[]> busyMinutes;
+  private final ImmutableSet<String> peopleWithoutBitmaps;
+  private final long[] attendeesBusyMinutes = new long[WORDS];
+
+  // Runs of free minutes are separated by at least one busy minute, so a day has at most half as
+  // many of them as minutes, rounded up.
+  private final int[] freeStarts = new int[(MINUTES_PER_DAY + 1) / 2];
+  private final int[] freeEnds = new int[(MINUTES_PER_DAY + 1) / 2];
+
+  /**
+   * Creates a query that finds meeting times from the busy times in the calendar index.
+   */
+  public DayBitmapQuery(AttendeeCalendarIndex calendar) {
+    this.calendar = calendar;
+
+    ImmutableMap.Builder<String, long[]> busyMinutes = ImmutableMap.builder();
+    ImmutableSet.Builder<String> peopleWithoutBitmaps = ImmutableSet.builder();
+    for (String person : calendar.getPeople()) {
+      long[] bitmap = new long[WORDS];
+      boolean fitsBitmap = true;
+      for (TimeRange time : calendar.getBusyTimes(person)) {
+        // A busy time with no duration still splits the free time around it, which a bitmap of
+        // busy minutes cannot show, so such people are left to FindMeetingQuery.
+        if (time.duration() <= 0 || time.start() < 0 || time.end() > MINUTES_PER_DAY) {
+          fitsBitmap = false;
+          break;
+        }
+        setMinutes(bitmap, time.start(), time.end());
+      }
+
+      if (fitsBitmap) {
+        busyMinutes.put(person, bitmap);
+      } else {
+        peopleWithoutBitmaps.add(person);
+      }
+    }
+    this.busyMinutes = busyMinutes.build();
+    this.peopleWithoutBitmaps = peopleWithoutBitmaps.build();
+  }
+
+  /**
+   * Returns the times when the meeting can take place, exactly as
+   * {@link FindMeetingQuery#query(AttendeeCalendarIndex, MeetingRequest)} does.
+   */
+  public Collection<TimeRange> query(MeetingRequest request) {
+    long duration = request.getDuration();
+
+    // There are no options for a meeting longer than a day.
+    if (duration > MINUTES_PER_DAY) {
+      return ImmutableList.of();
+    }
+
+    Collection<String> mandatoryAttendees = request.getAttendees();
+    Collection<String> optionalAttendees = request.getOptionalAttendees();
+
+    // A meeting with no duration fits in the empty gaps between touching events, which a bitmap of
+    // busy minutes cannot show, so it is left to FindMeetingQuery along with the attendees whose
+    // busy times do not fit in a bitmap.
+    if (duration <= 0 || !haveBitmaps(mandatoryAttendees) || !haveBitmaps(optionalAttendees)) {
+      return new FindMeetingQuery().query(calendar, request);
+    }
+
+    clearBusyMinutes();
+    addBusyMinutes(mandatoryAttendees);
+
+    if (!optionalAttendees.isEmpty()) {
+      // Add the optional attendees to the mandatory attendees' busy minutes.
+      addBusyMinutes(optionalAttendees);
+      int numberOfMeetings = findFreeTimes((int) duration);
+
+      // If time slots exist so that both mandatory and optional attendees can attend, return those
+      // time slots.
+      if (numberOfMeetings > 0 || mandatoryAttendees.isEmpty()) {
+        return getFreeTimes(numberOfMeetings);
+      }
+
+      // Otherwise, go back to the busy minutes of the mandatory attendees only.
+      clearBusyMinutes();
+      addBusyMinutes(mandatoryAttendees);
+    }
+
+    return getFreeTimes(findFreeTimes((int) duration));
+  }
+
+  private boolean haveBitmaps(Collection<String> people) {
+    for (String person : people) {
+      if (peopleWithoutBitmaps.contains(person)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void clearBusyMinutes() {
+    Arrays.fill(attendeesBusyMinutes, 0);
+    attendeesBusyMinutes[WORDS - 1] = AFTER_END_OF_DAY;
+  }
+
+  /**
+   * ORs the busy minutes of the people into the attendees' busy minutes. People without any events
+   * are never busy.
+   */
+  private void addBusyMinutes(Collection<String> people) {
+    for (String person : people) {
+      long[] bitmap = busyMinutes.get(person);
+      if (bitmap != null) {
+        for (int i = 0; i < WORDS; i++) {
+          attendeesBusyMinutes[i] |= bitmap[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the runs of minutes when none of the attendees are busy that are at least as long as the
+   * meeting, and returns how many there are. They are kept in the free time arrays rather than
+   * returned, so that finding out whether there are any does not allocate.
+   */
+  private int findFreeTimes(int duration) {
+    int numberOfFreeTimes = 0;
+    int start = nextMinute(attendeesBusyMinutes, 0, false);
+    while (start < MINUTES_PER_DAY) {
+      int end = nextMinute(attendeesBusyMinutes, start, true);
+      if (end - start >= duration) {
+        freeStarts[numberOfFreeTimes] = start;
+        freeEnds[numberOfFreeTimes] = end;
+        numberOfFreeTimes++;
+      }
+      start = nextMinute(attendeesBusyMinutes, end, false);
+    }
+    return numberOfFreeTimes;
+  }
+
+  /**
+   * Gets the list of free times found by the last call to findFreeTimes, in order.
+   */
+  private ImmutableList<TimeRange> getFreeTimes(int numberOfFreeTimes) {
+    ImmutableList.Builder<TimeRange> possibleTimes =
+        ImmutableList.builderWithExpectedSize(numberOfFreeTimes);
+    for (int i = 0; i < numberOfFreeTimes; i++) {
+      possibleTimes.add(TimeRange.fromStartEnd(freeStarts[i], freeEnds[i], false));
+    }
+    return possibleTimes.build();
+  }
+
+  /**
+   * Returns the first minute from the given one on whose bit is set, or clear if {@code busy} is
+   * false. Returns the number of bits in the bitmap if there is none.
+   */
+  private static int nextMinute(long[] bitmap, int from, boolean busy) {
+    int index = from / Long.SIZE;
+    if (index >= bitmap.length) {
+      return bitmap.length * Long.SIZE;
+    }
+
+    // Shifting by the minute only uses its offset within the word.
+    long word = (busy ? bitmap[index] : ~bitmap[index]) & (-1L << from);
+    while (word == 0) {
+      index++;
+      if (index == bitmap.length) {
+        return bitmap.length * Long.SIZE;
+      }
+      word = busy ? bitmap[index] : ~bitmap[index];
+    }
+    return index * Long.SIZE + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * Sets the bits of the minutes from start, inclusive, to end, exclusive.
+   */
+  private static void setMinutes(long[] bitmap, int start, int end) {
+    int first = start / Long.SIZE;
+    int last = (end - 1) / Long.SIZE;
+    long firstMask = -1L << start;
+    long lastMask = -1L >>> -end;
+
+    if (first == last) {
+      bitmap[first] |= firstMask & lastMask;
+      return;
+    }
+    bitmap[first] |= firstMask;
+    for (int i = first + 1; i < last; i++) {
+      bitmap[i] = -1L;
+    }
+    bitmap[last] |= lastMask;
+  }
+}
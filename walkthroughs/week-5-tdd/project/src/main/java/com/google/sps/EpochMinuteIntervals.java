@@ -0,0 +1,217 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of minutes since the epoch, kept as sorted arrays of the starts and ends of the ranges it
+ * is made of. The ranges never overlap or touch, so finding the ones within a span of time is a
+ * binary search, and combining two sets is a single pass over both. Sets are considered read-only.
+ */
+public final class EpochMinuteIntervals {
+  public static final EpochMinuteIntervals EMPTY =
+      new EpochMinuteIntervals(new long[0], new long[0]);
+
+  private final long[] starts;
+  private final long[] ends;
+
+  private EpochMinuteIntervals(long[] starts, long[] ends) {
+    this.starts = starts;
+    this.ends = ends;
+  }
+
+  /**
+   * Creates a set of the minutes in any of the ranges.
+   */
+  public static EpochMinuteIntervals of(Collection<EpochMinuteRange> ranges) {
+    List<EpochMinuteRange> sortedRanges = new ArrayList<>(ranges);
+    sortedRanges.sort((a, b) -> Long.compare(a.start(), b.start()));
+
+    Builder builder = new Builder(sortedRanges.size());
+    for (EpochMinuteRange range : sortedRanges) {
+      builder.add(range.start(), range.end());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Creates a set of the minutes in the range.
+   */
+  public static EpochMinuteIntervals of(EpochMinuteRange range) {
+    return of(ImmutableList.of(range));
+  }
+
+  /**
+   * Returns the number of ranges in the set.
+   */
+  public int size() {
+    return starts.length;
+  }
+
+  public boolean isEmpty() {
+    return starts.length == 0;
+  }
+
+  /**
+   * Returns the ranges of the set in order.
+   */
+  public ImmutableList<EpochMinuteRange> getRanges() {
+    return getRangesOfAtLeast(0);
+  }
+
+  /**
+   * Returns the ranges of the set that are at least the given number of minutes long, in order.
+   */
+  public ImmutableList<EpochMinuteRange> getRangesOfAtLeast(long duration) {
+    ImmutableList.Builder<EpochMinuteRange> ranges = ImmutableList.builder();
+    for (int i = 0; i < starts.length; i++) {
+      if (ends[i] - starts[i] >= duration) {
+        ranges.add(EpochMinuteRange.fromStartEnd(starts[i], ends[i]));
+      }
+    }
+    return ranges.build();
+  }
+
+  /**
+   * Returns the minutes of the set that are within the range.
+   */
+  public EpochMinuteIntervals clip(EpochMinuteRange range) {
+    if (range.duration() == 0) {
+      return EMPTY;
+    }
+
+    // The ends are sorted as well as the starts, since the ranges do not overlap.
+    int first = firstIndexAbove(ends, range.start());
+    int last = firstIndexAbove(starts, range.end() - 1);
+    if (first >= last) {
+      return EMPTY;
+    }
+
+    long[] clippedStarts = Arrays.copyOfRange(starts, first, last);
+    long[] clippedEnds = Arrays.copyOfRange(ends, first, last);
+    clippedStarts[0] = Math.max(clippedStarts[0], range.start());
+    clippedEnds[last - first - 1] = Math.min(clippedEnds[last - first - 1], range.end());
+    return new EpochMinuteIntervals(clippedStarts, clippedEnds);
+  }
+
+  /**
+   * Returns the minutes that are in both this set and the other.
+   */
+  public EpochMinuteIntervals intersect(EpochMinuteIntervals other) {
+    Builder builder = new Builder(starts.length + other.starts.length);
+    int i = 0;
+    int j = 0;
+    while (i < starts.length && j < other.starts.length) {
+      builder.add(Math.max(starts[i], other.starts[j]), Math.min(ends[i], other.ends[j]));
+
+      // Move past whichever range ends first, since it cannot overlap anything later.
+      if (ends[i] < other.ends[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the minutes that are in this set but not in the other.
+   */
+  public EpochMinuteIntervals subtract(EpochMinuteIntervals other) {
+    Builder builder = new Builder(starts.length + other.starts.length);
+    int j = 0;
+    for (int i = 0; i < starts.length; i++) {
+      long start = starts[i];
+
+      // Skip the other ranges that end before this one starts.
+      while (j < other.starts.length && other.ends[j] <= start) {
+        j++;
+      }
+
+      // Cut out each of the other ranges that starts before this one ends. The last of them may
+      // also overlap the next range, so it is not skipped.
+      int k = j;
+      while (k < other.starts.length && other.starts[k] < ends[i]) {
+        builder.add(start, other.starts[k]);
+        start = Math.max(start, other.ends[k]);
+        k++;
+      }
+      builder.add(start, ends[i]);
+      j = Math.max(j, k - 1);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the index of the first value above the given one in a sorted array, or the length of
+   * the array if there is none.
+   */
+  private static int firstIndexAbove(long[] values, long value) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (values[middle] > value) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Collects ranges added in order of their start, combining those that overlap or touch and
+   * dropping those with no duration.
+   */
+  static final class Builder {
+    private long[] starts;
+    private long[] ends;
+    private int size;
+
+    Builder(int expectedSize) {
+      starts = new long[Math.max(expectedSize, 1)];
+      ends = new long[Math.max(expectedSize, 1)];
+    }
+
+    void add(long start, long end) {
+      if (end <= start) {
+        return;
+      }
+      if (size > 0 && start <= ends[size - 1]) {
+        ends[size - 1] = Math.max(ends[size - 1], end);
+        return;
+      }
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, 2 * size);
+        ends = Arrays.copyOf(ends, 2 * size);
+      }
+      starts[size] = start;
+      ends[size] = end;
+      size++;
+    }
+
+    EpochMinuteIntervals build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      return new EpochMinuteIntervals(Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+    }
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import java.time.Instant;
+
+/**
+ * A span of time in whole minutes since the epoch, from its start up to but not including its
+ * end. Unlike {@link TimeRange}, a range is not limited to one day, so it can describe events and
+ * meetings over weeks. Ranges are considered read-only.
+ */
+public final class EpochMinuteRange {
+  private static final long SECONDS_PER_MINUTE = 60;
+
+  private final long start;
+  private final long end;
+
+  private EpochMinuteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Returns the start of the range in minutes since the epoch.
+   */
+  public long start() {
+    return start;
+  }
+
+  /**
+   * Returns the end of the range in minutes since the epoch. This minute is not part of the range.
+   */
+  public long end() {
+    return end;
+  }
+
+  /**
+   * Returns the number of minutes in the range.
+   */
+  public long duration() {
+    return end - start;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof EpochMinuteRange && equals(this, (EpochMinuteRange) other);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(start) ^ Long.hashCode(end);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Range: [%s, %s)", toInstant(start), toInstant(end));
+  }
+
+  private static boolean equals(EpochMinuteRange a, EpochMinuteRange b) {
+    return a.start == b.start && a.end == b.end;
+  }
+
+  /**
+   * Creates a range from the start minute to the end minute, which is not included.
+   */
+  public static EpochMinuteRange fromStartEnd(long start, long end) {
+    if (end < start) {
+      throw new IllegalArgumentException("end cannot be before start");
+    }
+    return new EpochMinuteRange(start, end);
+  }
+
+  /**
+   * Creates a range covering every minute that is at least partly between the two instants.
+   */
+  public static EpochMinuteRange fromInstants(Instant start, Instant end) {
+    long endMinute = Math.floorDiv(end.getEpochSecond(), SECONDS_PER_MINUTE);
+    if (end.getEpochSecond() % SECONDS_PER_MINUTE != 0 || end.getNano() != 0) {
+      endMinute++;
+    }
+    return fromStartEnd(toEpochMinute(start), endMinute);
+  }
+
+  /**
+   * Returns the minute since the epoch that the instant falls in.
+   */
+  public static long toEpochMinute(Instant instant) {
+    return Math.floorDiv(instant.getEpochSecond(), SECONDS_PER_MINUTE);
+  }
+
+  /**
+   * Returns the instant at the start of the minute since the epoch.
+   */
+  public static Instant toInstant(long epochMinute) {
+    return Instant.ofEpochSecond(epochMinute * SECONDS_PER_MINUTE);
+  }
+}
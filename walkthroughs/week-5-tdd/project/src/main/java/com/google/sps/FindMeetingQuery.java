@@ -20,46 +20,273 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Implements the "find a meeting" feature which returns the possible times when
  * a meeting could be scheduled given information about the meeting and a list
  * of all the events already scheduled.
+ *
+ * <p>A query reuses the conflict arrays of the previous one, so an instance must not be shared
+ * between threads.
  */
 public final class FindMeetingQuery {
+  // The start and end of each conflict of the current query, sorted by start time, and of each
+  // possible meeting time found from them. The arrays are kept for later queries so that a query
+  // only allocates the times it returns.
+  private int[] conflictStarts = new int[16];
+  private int[] conflictEnds = new int[16];
+  private int numberOfConflicts;
+  private int[] meetingStarts = new int[17];
+  private int[] meetingEnds = new int[17];
+
   public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+    return query(AttendeeCalendarIndex.of(events), request);
+  }
+
+  /**
+   * Finds the possible meeting times from an index of when each person is busy, which can be
+   * built once and reused for many queries.
+   */
+  public Collection<TimeRange> query(AttendeeCalendarIndex calendar, MeetingRequest request) {
+    long meetingDuration = request.getDuration();
+
     // There are no options for a meeting longer than a day.
-    if (request.getDuration() > TimeRange.WHOLE_DAY.duration()) {
+    if (meetingDuration > TimeRange.WHOLE_DAY.duration()) {
       return Arrays.asList();
     }
 
     Collection<String> mandatoryAttendees = request.getAttendees();
     Collection<String> optionalAttendees = request.getOptionalAttendees();
 
-    // Get the list of time ranges where the mandatory attendees have scheduled events.
-    List<TimeRange> conflicts = findTimeConflicts(events, mandatoryAttendees);
-    Collection<TimeRange> meetings = getPossibleMeetingTimes(conflicts, request);
+    // Get the time ranges where the mandatory attendees have scheduled events.
+    numberOfConflicts = 0;
+    addTimeConflicts(calendar, mandatoryAttendees, meetingDuration);
 
     if (!optionalAttendees.isEmpty()) {
-      // Get the list of time ranges where all attendees have scheduled events.
-      List<TimeRange> optionalAttendeeConflicts = findTimeConflicts(events, optionalAttendees);
-      conflicts = Stream.concat(conflicts.stream(), optionalAttendeeConflicts.stream())
-                      .sorted(TimeRange.ORDER_BY_START)
-                      .collect(Collectors.toList());
-
-      Collection<TimeRange> meetingsWithOptionalAttendees =
-          getPossibleMeetingTimes(conflicts, request);
+      // Add the time ranges where the optional attendees have scheduled events, so that the
+      // conflicts are those of all attendees.
+      addTimeConflicts(calendar, optionalAttendees, meetingDuration);
+      int numberOfMeetings = findPossibleMeetingTimes(meetingDuration);
 
       // If time slots exist so that both mandatory and optional attendees can attend, return those
       // time slots.
-      if (!meetingsWithOptionalAttendees.isEmpty() || mandatoryAttendees.isEmpty()) {
-        return meetingsWithOptionalAttendees;
+      if (numberOfMeetings > 0 || mandatoryAttendees.isEmpty()) {
+        return getPossibleMeetingTimes(numberOfMeetings);
       }
+
+      // Otherwise, go back to the conflicts of the mandatory attendees only.
+      numberOfConflicts = 0;
+      addTimeConflicts(calendar, mandatoryAttendees, meetingDuration);
+    }
+
+    return getPossibleMeetingTimes(findPossibleMeetingTimes(meetingDuration));
+  }
+
+  public List<MeetingOption> queryMaximizingOptionalAttendees(
+      Collection<Event> events, MeetingRequest request) {
+    return queryMaximizingOptionalAttendees(AttendeeCalendarIndex.of(events), request);
+  }
+
+  /**
+   * Finds the times when all the mandatory attendees and as many of the optional attendees as
+   * possible can meet. Unlike {@link #query}, which drops every optional attendee if they cannot
+   * all attend, this returns options that admit any number of them.
+   *
+   * <p>Each option is a time range when the mandatory attendees are free, together with the
+   * optional attendees who are free for all of it. An option is left out if a longer one admits the
+   * same optional attendees. The options are ranked by how many optional attendees they admit, so
+   * the first ones admit the most.
+   */
+  public List<MeetingOption> queryMaximizingOptionalAttendees(
+      AttendeeCalendarIndex calendar, MeetingRequest request) {
+    // A meeting with no duration is given a minute, so that no option is an empty time range.
+    long meetingDuration = Math.max(request.getDuration(), 1);
+
+    // There are no options for a meeting longer than a day.
+    if (meetingDuration > TimeRange.WHOLE_DAY.duration()) {
+      return new ArrayList<>();
+    }
+
+    // Find the times when the mandatory attendees are free for long enough.
+    numberOfConflicts = 0;
+    addTimeConflicts(calendar, request.getAttendees(), meetingDuration);
+    int numberOfFreeTimes = findPossibleMeetingTimes(meetingDuration);
+
+    ImmutableList<String> optionalAttendees = ImmutableList.copyOf(request.getOptionalAttendees());
+    List<MeetingOption> options = new ArrayList<>();
+    for (int i = 0; i < numberOfFreeTimes; i++) {
+      addMeetingOptions(calendar, optionalAttendees, meetingStarts[i], meetingEnds[i],
+          meetingDuration, options);
     }
 
-    return meetings;
+    options.sort(MeetingOption.ORDER_BY_ATTENDANCE);
+    return options;
+  }
+
+  /**
+   * Adds the options within a time when the mandatory attendees are free. The free time is split
+   * into segments at every start and end of an optional attendee's busy times, so that each of them
+   * is either busy or free for all of a segment, and the optional attendees who are free in a
+   * segment are kept as a bitmask. A busy time with no duration splits the free time as it does in
+   * {@link #query}, so the attendees who can stay in an option running across each boundary are
+   * kept as a bitmask too. Sweeping over the segments from each one that starts an option then
+   * only needs to AND the masks, one word per 64 optional attendees. A sweep stops extending once
+   * nobody is left in the mask, but in the worst case every sweep reaches the end of the free time,
+   * which takes O(segments^2 * words).
+   */
+  private static void addMeetingOptions(AttendeeCalendarIndex calendar,
+      List<String> optionalAttendees, int freeStart, int freeEnd, long meetingDuration,
+      List<MeetingOption> options) {
+    int[] boundaries = getSegmentBoundaries(calendar, optionalAttendees, freeStart, freeEnd);
+    int numberOfSegments = boundaries.length - 1;
+    int words = (optionalAttendees.size() + Long.SIZE - 1) / Long.SIZE;
+
+    // Start with every optional attendee free in every segment and across every boundary, then
+    // clear the segments that each attendee's busy times cover, and the boundaries where they have
+    // busy times with no duration.
+    long[] freeAttendees = new long[numberOfSegments * words];
+    long[] crossingAttendees = new long[boundaries.length * words];
+    for (int person = 0; person < optionalAttendees.size(); person++) {
+      for (int segment = 0; segment < numberOfSegments; segment++) {
+        freeAttendees[segment * words + person / Long.SIZE] |= 1L << person;
+      }
+      for (int boundary = 0; boundary < boundaries.length; boundary++) {
+        crossingAttendees[boundary * words + person / Long.SIZE] |= 1L << person;
+      }
+    }
+    for (int person = 0; person < optionalAttendees.size(); person++) {
+      for (TimeRange time : calendar.getBusyTimes(optionalAttendees.get(person))) {
+        if (time.duration() == 0) {
+          if (time.start() > freeStart && time.start() < freeEnd) {
+            int boundary = Arrays.binarySearch(boundaries, time.start());
+            crossingAttendees[boundary * words + person / Long.SIZE] &= ~(1L << person);
+          }
+          continue;
+        }
+
+        int start = Math.max(time.start(), freeStart);
+        int end = Math.min(time.end(), freeEnd);
+        for (int segment = start < end ? Arrays.binarySearch(boundaries, start) : numberOfSegments;
+             segment < numberOfSegments && boundaries[segment] < end; segment++) {
+          freeAttendees[segment * words + person / Long.SIZE] &= ~(1L << person);
+        }
+      }
+    }
+
+    long[] attendees = new long[words];
+    for (int first = 0; first < numberOfSegments; first++) {
+      System.arraycopy(freeAttendees, first * words, attendees, 0, words);
+
+      // Extend the option one segment at a time. It is only added where the next segment would
+      // lose an attendee, and only if the segment before it would have lost one too, since
+      // otherwise a longer option admits the same attendees.
+      for (int last = first; last < numberOfSegments; last++) {
+        boolean endOfFreeTime = last == numberOfSegments - 1;
+        if (!endOfFreeTime
+            && isSubset(attendees, freeAttendees, crossingAttendees, last + 1, last + 1, words)) {
+          continue;
+        }
+
+        if (boundaries[last + 1] - boundaries[first] >= meetingDuration && (first == 0
+            || !isSubset(attendees, freeAttendees, crossingAttendees, first - 1, first, words))) {
+          options.add(new MeetingOption(
+              TimeRange.fromStartEnd(boundaries[first], boundaries[last + 1], false),
+              getPeople(attendees, optionalAttendees)));
+        }
+
+        if (!endOfFreeTime) {
+          for (int word = 0; word < words; word++) {
+            attendees[word] &= freeAttendees[(last + 1) * words + word]
+                & crossingAttendees[(last + 1) * words + word];
+          }
+
+          // With no attendees left, every later segment keeps them all, so the only option left is
+          // the one running to the end of the free time.
+          if (isEmpty(attendees)) {
+            last = numberOfSegments - 2;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the start of the free time, the starts and ends of the optional attendees' busy times
+   * within it, and its end, sorted without duplicates.
+   */
+  private static int[] getSegmentBoundaries(AttendeeCalendarIndex calendar,
+      List<String> optionalAttendees, int freeStart, int freeEnd) {
+    List<TimeRange> busyTimes = new ArrayList<>();
+    for (String person : optionalAttendees) {
+      busyTimes.addAll(calendar.getBusyTimes(person));
+    }
+
+    int[] boundaries = new int[2 * busyTimes.size() + 2];
+    int numberOfBoundaries = 0;
+    boundaries[numberOfBoundaries++] = freeStart;
+    boundaries[numberOfBoundaries++] = freeEnd;
+    for (TimeRange time : busyTimes) {
+      if (time.start() > freeStart && time.start() < freeEnd) {
+        boundaries[numberOfBoundaries++] = time.start();
+      }
+      if (time.end() > freeStart && time.end() < freeEnd) {
+        boundaries[numberOfBoundaries++] = time.end();
+      }
+    }
+    return Arrays.stream(boundaries, 0, numberOfBoundaries).sorted().distinct().toArray();
+  }
+
+  /**
+   * Returns true if every attendee in the bitmask is free in the segment and can stay in an option
+   * across the boundary into it.
+   */
+  private static boolean isSubset(long[] attendees, long[] freeAttendees,
+      long[] crossingAttendees, int segment, int boundary, int words) {
+    for (int word = 0; word < words; word++) {
+      long keptAttendees =
+          freeAttendees[segment * words + word] & crossingAttendees[boundary * words + word];
+      if ((attendees[word] & ~keptAttendees) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isEmpty(long[] attendees) {
+    for (long word : attendees) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<String> getPeople(long[] attendees, List<String> people) {
+    List<String> attending = new ArrayList<>();
+    for (int person = 0; person < people.size(); person++) {
+      if ((attendees[person / Long.SIZE] & (1L << person)) != 0) {
+        attending.add(people.get(person));
+      }
+    }
+    return attending;
+  }
+
+  /**
+   * Merges the time ranges where any of the given people are busy into the conflicts.
+   */
+  private void addTimeConflicts(
+      AttendeeCalendarIndex calendar, Collection<String> people, long meetingDuration) {
+    // A meeting with no duration fits in the empty gap where two events touch, which the combined
+    // busy times of each person no longer show, so its conflicts are found from the events instead.
+    if (meetingDuration <= 0) {
+      mergeTimeConflicts(findTimeConflicts(calendar.getEvents(), people));
+      return;
+    }
+
+    // Each person's busy times are already sorted, so they are merged in rather than sorted.
+    for (String person : people) {
+      mergeTimeConflicts(calendar.getBusyTimes(person));
+    }
   }
 
   /**
@@ -84,73 +311,111 @@ public final class FindMeetingQuery {
   }
 
   /**
-   * Gets the list of time ranges when all attendees are free to have
-   * the requested meeting given a list of conflicting time ranges
-   * that is sorted by start time.
+   * Merges a list of time ranges sorted by start time into the conflicts so that they stay sorted
+   * by start time. A time range that starts at the same time as a conflict goes after it.
    */
-  private ImmutableList<TimeRange> getPossibleMeetingTimes(
-      List<TimeRange> conflicts, MeetingRequest request) {
-    long meetingDuration = request.getDuration();
-    ImmutableList.Builder<TimeRange> possibleTimes = ImmutableList.<TimeRange>builder();
+  private void mergeTimeConflicts(List<TimeRange> times) {
+    int size = numberOfConflicts + times.size();
+    if (size > conflictStarts.length) {
+      int capacity = Math.max(size, 2 * conflictStarts.length);
+      conflictStarts = Arrays.copyOf(conflictStarts, capacity);
+      conflictEnds = Arrays.copyOf(conflictEnds, capacity);
+    }
+
+    // Merge from the back, so that each conflict is moved at most once to make room.
+    int conflictIndex = numberOfConflicts - 1;
+    for (int timeIndex = times.size() - 1; timeIndex >= 0; timeIndex--) {
+      TimeRange time = times.get(timeIndex);
+      while (conflictIndex >= 0 && conflictStarts[conflictIndex] > time.start()) {
+        conflictStarts[conflictIndex + timeIndex + 1] = conflictStarts[conflictIndex];
+        conflictEnds[conflictIndex + timeIndex + 1] = conflictEnds[conflictIndex];
+        conflictIndex--;
+      }
+      conflictStarts[conflictIndex + timeIndex + 1] = time.start();
+      conflictEnds[conflictIndex + timeIndex + 1] = time.end();
+    }
+    numberOfConflicts = size;
+  }
+
+  /**
+   * Finds the time ranges when all attendees are free to have the requested meeting given the
+   * conflicts, and returns how many there are. They are kept in the meeting arrays rather than
+   * returned, so that finding out whether there are any does not allocate.
+   */
+  private int findPossibleMeetingTimes(long meetingDuration) {
+    if (meetingStarts.length <= numberOfConflicts) {
+      meetingStarts = new int[conflictStarts.length + 1];
+      meetingEnds = new int[conflictStarts.length + 1];
+    }
+    int numberOfMeetings = 0;
     int freeStart = TimeRange.START_OF_DAY;
 
     // Add time ranges that are in the gaps between conflicting events.
     int conflictIndex = 0;
-    while (conflictIndex < conflicts.size()) {
-      OverlappingTimeRange conflict =
-          combineOverlappingTimes(conflicts.subList(conflictIndex, conflicts.size()));
+    while (conflictIndex < numberOfConflicts) {
+      int start = conflictStarts[conflictIndex];
+      int latestStart = start;
+      int end = conflictEnds[conflictIndex];
+      conflictIndex++;
 
-      // Move the index to after the chunk of overlapping times.
-      conflictIndex += conflict.getNumberOfOverlappingTimes();
+      // Move the index to after the chunk of overlapping times. The remaining time ranges that
+      // overlap with the current should be compared to the one with the latest end time.
+      // Otherwise, in the case that a time range contains two non-overlapping time ranges, the
+      // loop would exit before all three time ranges are looked at because the third range does
+      // not overlap with the second.
+      while (conflictIndex < numberOfConflicts && overlaps(latestStart, end,
+                 conflictStarts[conflictIndex], conflictEnds[conflictIndex])) {
+        if (conflictEnds[conflictIndex] > end) {
+          latestStart = conflictStarts[conflictIndex];
+          end = conflictEnds[conflictIndex];
+        }
+        conflictIndex++;
+      }
 
       // Add the free time in between conflicts if it is long enough for the meeting.
-      TimeRange freeTime = TimeRange.fromStartEnd(freeStart, conflict.start(), false);
-      if (freeTime.duration() >= meetingDuration) {
-        possibleTimes.add(freeTime);
+      if (start - freeStart >= meetingDuration) {
+        meetingStarts[numberOfMeetings] = freeStart;
+        meetingEnds[numberOfMeetings] = start;
+        numberOfMeetings++;
       }
 
       // The start of the next free time range is the end of the latest conflict.
-      freeStart = conflict.end();
+      freeStart = end;
     }
 
     // Add the free time between the end of the last conflict and end of day.
-    TimeRange freeTime = TimeRange.fromStartEnd(freeStart, TimeRange.END_OF_DAY, true);
-    if (freeTime.duration() >= meetingDuration) {
-      possibleTimes.add(freeTime);
+    if (TimeRange.END_OF_DAY + 1 - freeStart >= meetingDuration) {
+      meetingStarts[numberOfMeetings] = freeStart;
+      meetingEnds[numberOfMeetings] = TimeRange.END_OF_DAY + 1;
+      numberOfMeetings++;
     }
 
-    return possibleTimes.build();
+    return numberOfMeetings;
   }
 
-  // Creates an overlapping time range containing a list of the time ranges that overlap
-  // starting at the first one. If no time ranges overlap with the first, the list
-  // will be of size one. The given list of times must be sorted by start time.
-  private OverlappingTimeRange combineOverlappingTimes(List<TimeRange> times) {
-    int currentIndex = 0;
-    TimeRange overlappingTime = times.get(currentIndex);
-    int start = overlappingTime.start();
-    int end = overlappingTime.end();
-
-    List<TimeRange> overlappingTimes = new ArrayList<>();
-    overlappingTimes.add(overlappingTime);
-
-    // Add all the time ranges that overlap with the current one and get the latest end time.
-    while (
-        currentIndex < times.size() - 1 && overlappingTime.overlaps(times.get(currentIndex + 1))) {
-      currentIndex++;
-      TimeRange nextOverlappingTime = times.get(currentIndex);
-      overlappingTimes.add(nextOverlappingTime);
-
-      // The remaining time ranges that overlap with the current should be compared to the one
-      // with the latest end time. Otherwise, in the case that a time range contains two
-      // non-overlapping time ranges, the loop would exit before all three time ranges are
-      // looked at because the third range does not overlap with the second.
-      if (nextOverlappingTime.end() > end) {
-        overlappingTime = nextOverlappingTime;
-        end = nextOverlappingTime.end();
-      }
+  /**
+   * Gets the list of time ranges found by the last call to findPossibleMeetingTimes.
+   */
+  private ImmutableList<TimeRange> getPossibleMeetingTimes(int numberOfMeetings) {
+    ImmutableList.Builder<TimeRange> possibleTimes =
+        ImmutableList.builderWithExpectedSize(numberOfMeetings);
+    for (int i = 0; i < numberOfMeetings; i++) {
+      possibleTimes.add(TimeRange.fromStartEnd(meetingStarts[i], meetingEnds[i], false));
     }
+    return possibleTimes.build();
+  }
 
-    return new OverlappingTimeRange(overlappingTimes, start, end);
+  /**
+   * Checks if two time ranges overlap in the same way as {@link TimeRange#overlaps}.
+   */
+  private static boolean overlaps(int start, int end, int otherStart, int otherEnd) {
+    return contains(start, end, otherStart) || contains(otherStart, otherEnd, start);
+  }
+
+  /**
+   * Checks if a time range contains a point in the same way as {@link TimeRange#contains(int)}.
+   */
+  private static boolean contains(int start, int end, int point) {
+    return start < end && start <= point && point < end;
   }
 }
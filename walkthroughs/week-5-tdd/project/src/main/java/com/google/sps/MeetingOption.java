@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * A possible time for a meeting together with the optional attendees who are free for all of it.
+ * Options are considered read-only.
+ */
+public final class MeetingOption {
+  /**
+   * A comparator for ranking options by how many optional attendees can attend, most first, and
+   * then by their start time in ascending order.
+   */
+  public static final Comparator<MeetingOption> ORDER_BY_ATTENDANCE =
+      Comparator.<MeetingOption>comparingInt(option -> -option.optionalAttendees.size())
+          .thenComparing(MeetingOption::getWhen, TimeRange.ORDER_BY_START);
+
+  private final TimeRange when;
+  private final ImmutableSet<String> optionalAttendees;
+
+  public MeetingOption(TimeRange when, Collection<String> optionalAttendees) {
+    this.when = when;
+    this.optionalAttendees = ImmutableSet.copyOf(optionalAttendees);
+  }
+
+  /**
+   * Returns the {@code TimeRange} when the meeting could take place.
+   */
+  public TimeRange getWhen() {
+    return when;
+  }
+
+  /**
+   * Returns the optional attendees who are free for all of the time range.
+   */
+  public ImmutableSet<String> getOptionalAttendees() {
+    return optionalAttendees;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof MeetingOption && equals(this, (MeetingOption) other);
+  }
+
+  @Override
+  public int hashCode() {
+    return when.hashCode() ^ optionalAttendees.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return when + " with " + optionalAttendees;
+  }
+
+  private static boolean equals(MeetingOption a, MeetingOption b) {
+    return a.when.equals(b.when) && a.optionalAttendees.equals(b.optionalAttendees);
+  }
+}
@@ -0,0 +1,104 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the possible times for a meeting over any span of time, such as several weeks, rather than
+ * within one day like {@link FindMeetingQuery}. Meetings may be longer than a day, and each person
+ * can only be invited during their working hours, in their own time zone.
+ *
+ * <p>Each person's busy times are indexed once as an {@link EpochMinuteIntervals}, so a query only
+ * reads the busy times of its attendees that are within the horizon it searches.
+ */
+public final class MultiDayMeetingQuery {
+  private final ImmutableMap<String, EpochMinuteIntervals> busyTimes;
+  private final ImmutableMap<String, WorkingHours> workingHours;
+
+  /**
+   * Creates a query over the events. People without working hours can be invited at any time.
+   */
+  public MultiDayMeetingQuery(
+      Collection<CalendarEvent> events, Map<String, WorkingHours> workingHours) {
+    Map<String, List<EpochMinuteRange>> eventTimes = new HashMap<>();
+    for (CalendarEvent event : events) {
+      for (String attendee : event.getAttendees()) {
+        eventTimes.computeIfAbsent(attendee, key -> new ArrayList<>()).add(event.getWhen());
+      }
+    }
+
+    ImmutableMap.Builder<String, EpochMinuteIntervals> busyTimes = ImmutableMap.builder();
+    for (Map.Entry<String, List<EpochMinuteRange>> entry : eventTimes.entrySet()) {
+      busyTimes.put(entry.getKey(), EpochMinuteIntervals.of(entry.getValue()));
+    }
+    this.busyTimes = busyTimes.build();
+    this.workingHours = ImmutableMap.copyOf(workingHours);
+  }
+
+  /**
+   * Returns the times within the horizon when all attendees are free and working for at least the
+   * duration of the meeting, in order. As with {@link FindMeetingQuery#query}, the optional
+   * attendees are only considered if there are times when all of them can attend too.
+   */
+  public List<EpochMinuteRange> query(MeetingRequest request, EpochMinuteRange horizon) {
+    long meetingDuration = request.getDuration();
+    Collection<String> mandatoryAttendees = request.getAttendees();
+    Collection<String> optionalAttendees = request.getOptionalAttendees();
+
+    EpochMinuteIntervals meetings =
+        getFreeTimes(EpochMinuteIntervals.of(horizon), mandatoryAttendees, horizon);
+
+    if (!optionalAttendees.isEmpty()) {
+      List<EpochMinuteRange> meetingsWithOptionalAttendees =
+          getFreeTimes(meetings, optionalAttendees, horizon).getRangesOfAtLeast(meetingDuration);
+
+      // If time slots exist so that both mandatory and optional attendees can attend, return those
+      // time slots.
+      if (!meetingsWithOptionalAttendees.isEmpty() || mandatoryAttendees.isEmpty()) {
+        return meetingsWithOptionalAttendees;
+      }
+    }
+
+    return meetings.getRangesOfAtLeast(meetingDuration);
+  }
+
+  /**
+   * Narrows the free times down to those when each of the people is working and not busy.
+   */
+  private EpochMinuteIntervals getFreeTimes(
+      EpochMinuteIntervals freeTimes, Collection<String> people, EpochMinuteRange horizon) {
+    for (String person : people) {
+      if (freeTimes.isEmpty()) {
+        break;
+      }
+
+      WorkingHours hours = workingHours.get(person);
+      if (hours != null) {
+        freeTimes = freeTimes.intersect(hours.getWorkingTimes(horizon));
+      }
+
+      EpochMinuteIntervals personBusyTimes = busyTimes.get(person);
+      if (personBusyTimes != null) {
+        freeTimes = freeTimes.subtract(personBusyTimes.clip(horizon));
+      }
+    }
+    return freeTimes;
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import com.google.common.collect.ImmutableSet;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * The hours of the week when a person can be invited to meetings, in their own time zone. Working
+ * hours whose end is not after their start run past midnight into the next day. Working hours are
+ * considered read-only.
+ */
+public final class WorkingHours {
+  private final ZoneId zone;
+  private final LocalTime start;
+  private final LocalTime end;
+  private final ImmutableSet<DayOfWeek> days;
+
+  /**
+   * Creates new working hours.
+   *
+   * @param zone The time zone that the times are in. Must be non-null.
+   * @param start The time of day when work starts. Must be non-null.
+   * @param end The time of day when work ends. Must be non-null.
+   * @param days The days of the week when work starts. Must be non-null.
+   */
+  public WorkingHours(ZoneId zone, LocalTime start, LocalTime end, Collection<DayOfWeek> days) {
+    if (zone == null || start == null || end == null || days == null) {
+      throw new IllegalArgumentException("working hours cannot have null fields");
+    }
+
+    this.zone = zone;
+    this.start = start;
+    this.end = end;
+    this.days = ImmutableSet.copyOf(days);
+  }
+
+  /**
+   * Creates working hours from Monday to Friday.
+   */
+  public static WorkingHours weekdays(ZoneId zone, LocalTime start, LocalTime end) {
+    return new WorkingHours(zone, start, end, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+  }
+
+  /**
+   * Returns the minutes within the range that are working hours.
+   */
+  public EpochMinuteIntervals getWorkingTimes(EpochMinuteRange range) {
+    // Start a day early, in case the working hours of the day before run into the range.
+    LocalDate date = toDate(range.start()).minusDays(1);
+    LocalDate lastDate = toDate(range.end());
+
+    EpochMinuteIntervals.Builder workingTimes = new EpochMinuteIntervals.Builder(
+        (int) (lastDate.toEpochDay() - date.toEpochDay() + 1));
+    for (; !date.isAfter(lastDate); date = date.plusDays(1)) {
+      if (days.contains(date.getDayOfWeek())) {
+        LocalDate endDate = end.isAfter(start) ? date : date.plusDays(1);
+        long workStart = toEpochMinute(ZonedDateTime.of(date, start, zone));
+        long workEnd = toEpochMinute(ZonedDateTime.of(endDate, end, zone));
+        workingTimes.add(Math.max(workStart, range.start()), Math.min(workEnd, range.end()));
+      }
+    }
+    return workingTimes.build();
+  }
+
+  private LocalDate toDate(long epochMinute) {
+    return EpochMinuteRange.toInstant(epochMinute).atZone(zone).toLocalDate();
+  }
+
+  private static long toEpochMinute(ZonedDateTime time) {
+    return EpochMinuteRange.toEpochMinute(time.toInstant());
+  }
+}
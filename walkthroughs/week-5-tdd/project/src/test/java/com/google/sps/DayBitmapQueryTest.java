@@ -0,0 +1,105 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DayBitmapQueryTest {
+  private static final String[] PEOPLE = {"Person A", "Person B", "Person C", "Person D"};
+  private static final int CALENDARS = 10000;
+
+  @Test
+  public void eventsEndingAtEndOfDay() {
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(23, 0), TimeRange.END_OF_DAY, true),
+        Arrays.asList(PEOPLE[0])));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PEOPLE[0]), 60);
+
+    Collection<TimeRange> actual =
+        new DayBitmapQuery(AttendeeCalendarIndex.of(events)).query(request);
+    Collection<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TimeRange.getTimeInMinutes(23, 0), false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void sameTimesAsFindMeetingQueryForRandomCalendars() {
+    Random random = new Random(42);
+    for (int i = 0; i < CALENDARS; i++) {
+      AttendeeCalendarIndex calendar = AttendeeCalendarIndex.of(createEvents(random));
+      MeetingRequest request = createRequest(random);
+
+      Collection<TimeRange> expected = new FindMeetingQuery().query(calendar, request);
+      Collection<TimeRange> actual = new DayBitmapQuery(calendar).query(request);
+
+      Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+    }
+  }
+
+  /**
+   * Creates up to eight events, some of them with no duration, starting on the hour or at any
+   * minute.
+   */
+  private static List<Event> createEvents(Random random) {
+    List<Event> events = new ArrayList<>();
+    int numberOfEvents = random.nextInt(8);
+    for (int i = 0; i < numberOfEvents; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration());
+      if (random.nextBoolean()) {
+        start -= start % 60;
+      }
+      int duration = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(300);
+      duration = Math.min(duration, TimeRange.WHOLE_DAY.end() - start);
+
+      Set<String> attendees = new HashSet<>();
+      int numberOfAttendees = 1 + random.nextInt(2);
+      for (int j = 0; j < numberOfAttendees; j++) {
+        attendees.add(PEOPLE[random.nextInt(PEOPLE.length)]);
+      }
+      events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, duration), attendees));
+    }
+    return events;
+  }
+
+  /**
+   * Creates a request where each person is either mandatory, optional, or not invited.
+   */
+  private static MeetingRequest createRequest(Random random) {
+    List<String> attendees = new ArrayList<>();
+    List<String> optionalAttendees = new ArrayList<>();
+    for (String person : PEOPLE) {
+      int choice = random.nextInt(3);
+      if (choice == 0) {
+        attendees.add(person);
+      } else if (choice == 1) {
+        optionalAttendees.add(person);
+      }
+    }
+    int duration = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(240);
+    return new MeetingRequest(attendees, optionalAttendees, duration);
+  }
+}
@@ -422,4 +422,111 @@ public final class FindMeetingQueryTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void optionsAdmittingMostOptionalAttendeesComeFirst() {
+    // Have the optional attendees be busy at either end of the mandatory attendee's free time.
+    // The option that both optional attendees can attend should come first, followed by the
+    // longer options that fewer of them can attend.
+    //
+    // Events  : |---A---|             |---A---|
+    //                   |-B-|     |-C-|
+    // Day     : |-----------------------------|
+    // Options :             |--1--|
+    //                   |----2----|
+    //                       |----3----|
+    //                   |------4------|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 4", TimeRange.fromStartDuration(TIME_0930AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_C)));
+
+    Collection<String> attendees = Arrays.asList(PERSON_A);
+    Collection<String> optionalAttendees = Arrays.asList(PERSON_B, PERSON_C);
+    MeetingRequest request = new MeetingRequest(attendees, optionalAttendees, DURATION_1_HOUR);
+
+    List<MeetingOption> actual = query.queryMaximizingOptionalAttendees(events, request);
+    List<MeetingOption> expected = Arrays.asList(
+        new MeetingOption(TimeRange.fromStartEnd(TIME_0830AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_B, PERSON_C)),
+        new MeetingOption(
+            TimeRange.fromStartEnd(TIME_0800AM, TIME_0930AM, false), Arrays.asList(PERSON_C)),
+        new MeetingOption(
+            TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false), Arrays.asList(PERSON_B)),
+        new MeetingOption(TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false), NO_ATTENDEES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void optionalAttendeesAreKeptWhenNotAllCanAttend() {
+    // Have the optional attendees never be free at the same time. Each of them should still be
+    // admitted when they are free, rather than both being dropped.
+    //
+    // Events  : |-----B-----|
+    //                       |--------C--------|
+    // Day     : |-----------------------------|
+    // Options : |-----1-----|
+    //                       |--------2--------|
+    //           |--------------3--------------|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_C)));
+
+    Collection<String> attendees = Arrays.asList(PERSON_A);
+    Collection<String> optionalAttendees = Arrays.asList(PERSON_B, PERSON_C);
+    MeetingRequest request = new MeetingRequest(attendees, optionalAttendees, DURATION_30_MINUTES);
+
+    List<MeetingOption> actual = query.queryMaximizingOptionalAttendees(events, request);
+    List<MeetingOption> expected = Arrays.asList(
+        new MeetingOption(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_C)),
+        new MeetingOption(TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)),
+        new MeetingOption(TimeRange.WHOLE_DAY, NO_ATTENDEES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void optionalAttendeeEventWithNoDurationSplitsOptions() {
+    // Have the optional attendee's event take no time. It should split the options that the
+    // optional attendee can attend, as it splits the times when every attendee is free.
+    //
+    // Events  :               B
+    // Day     : |-----------------------------|
+    // Options : |-----1-----|
+    //                       |--------2--------|
+    //           |--------------3--------------|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0900AM, 0), Arrays.asList(PERSON_B)));
+
+    Collection<String> attendees = Arrays.asList(PERSON_A);
+    Collection<String> optionalAttendees = Arrays.asList(PERSON_B);
+    MeetingRequest request = new MeetingRequest(attendees, optionalAttendees, DURATION_30_MINUTES);
+
+    List<MeetingOption> actual = query.queryMaximizingOptionalAttendees(events, request);
+    List<MeetingOption> expected = Arrays.asList(
+        new MeetingOption(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_B)),
+        new MeetingOption(TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)),
+        new MeetingOption(TimeRange.WHOLE_DAY, NO_ATTENDEES));
+
+    Assert.assertEquals(expected, actual);
+
+    // The options that admit every optional attendee are the times that query() finds.
+    Assert.assertEquals(Arrays.asList(expected.get(0).getWhen(), expected.get(1).getWhen()),
+        query.query(events, request));
+  }
 }
@@ -0,0 +1,111 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class MultiDayMeetingQueryTest {
+  private static final Collection<CalendarEvent> NO_EVENTS = Collections.emptySet();
+  private static final Map<String, WorkingHours> NO_WORKING_HOURS = Collections.emptyMap();
+
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+  private static final ZoneId LONDON = ZoneId.of("Europe/London");
+  private static final LocalTime NINE_AM = LocalTime.of(9, 0);
+  private static final LocalTime FIVE_PM = LocalTime.of(17, 0);
+
+  private static final int DURATION_1_HOUR = 60;
+  private static final int DURATION_2_DAYS = 2 * 24 * 60;
+
+  // The horizon is the week starting on Monday, January 6, 2020 in UTC.
+  private static final EpochMinuteRange FIRST_WEEK_OF_2020 =
+      range("2020-01-06T00:00:00Z", "2020-01-13T00:00:00Z");
+
+  @Test
+  public void onlyOverlappingWorkingHoursAcrossTimeZones() {
+    // Working from 9 to 5 on weekdays in New York and London overlaps from 2 to 5 PM in London,
+    // which is UTC in January.
+    Map<String, WorkingHours> workingHours = new HashMap<>();
+    workingHours.put(PERSON_A, WorkingHours.weekdays(NEW_YORK, NINE_AM, FIVE_PM));
+    workingHours.put(PERSON_B, WorkingHours.weekdays(LONDON, NINE_AM, FIVE_PM));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_1_HOUR);
+
+    List<EpochMinuteRange> actual =
+        new MultiDayMeetingQuery(NO_EVENTS, workingHours).query(request, FIRST_WEEK_OF_2020);
+    List<EpochMinuteRange> expected = Arrays.asList(
+        range("2020-01-06T14:00:00Z", "2020-01-06T17:00:00Z"),
+        range("2020-01-07T14:00:00Z", "2020-01-07T17:00:00Z"),
+        range("2020-01-08T14:00:00Z", "2020-01-08T17:00:00Z"),
+        range("2020-01-09T14:00:00Z", "2020-01-09T17:00:00Z"),
+        range("2020-01-10T14:00:00Z", "2020-01-10T17:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void meetingsCanBeLongerThanADay() {
+    // Person B's event on Wednesday leaves two days before it and a day and a half after it, so
+    // only the first gap fits a two day meeting.
+    //
+    // Events  :           |--B--|
+    // Week    : |---------------------------|
+    // Options : |----1----|
+
+    Collection<CalendarEvent> events = Arrays.asList(new CalendarEvent("Event 1",
+        range("2020-01-08T00:00:00Z", "2020-01-11T12:00:00Z"), Arrays.asList(PERSON_B)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_2_DAYS);
+
+    List<EpochMinuteRange> actual =
+        new MultiDayMeetingQuery(events, NO_WORKING_HOURS).query(request, FIRST_WEEK_OF_2020);
+    List<EpochMinuteRange> expected =
+        Arrays.asList(range("2020-01-06T00:00:00Z", "2020-01-08T00:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void ignoreOptionalAttendeeIfConflict() {
+    // Person B is busy all week, so the meeting should be at any time that suits Person A.
+    Collection<CalendarEvent> events = Arrays.asList(
+        new CalendarEvent("Event 1", FIRST_WEEK_OF_2020, Arrays.asList(PERSON_B)));
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A), Arrays.asList(PERSON_B), DURATION_1_HOUR);
+
+    List<EpochMinuteRange> actual =
+        new MultiDayMeetingQuery(events, NO_WORKING_HOURS).query(request, FIRST_WEEK_OF_2020);
+    List<EpochMinuteRange> expected = Arrays.asList(FIRST_WEEK_OF_2020);
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  private static EpochMinuteRange range(String start, String end) {
+    return EpochMinuteRange.fromInstants(Instant.parse(start), Instant.parse(end));
+  }
+}